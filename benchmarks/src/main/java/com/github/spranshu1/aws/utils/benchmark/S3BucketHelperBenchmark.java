@@ -0,0 +1,140 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.benchmark;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.github.spranshu1.aws.utils.local.FaultProfile;
+import com.github.spranshu1.aws.utils.local.LatencyDistribution;
+import com.github.spranshu1.aws.utils.local.LocalAmazonS3;
+import com.github.spranshu1.aws.utils.s3.S3BucketHelper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * S3BucketHelper upload, download, list, head and delete paths against {@link LocalAmazonS3}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class S3BucketHelperBenchmark {
+
+    private static final String BUCKET = "benchmark";
+    private static final String OBJECT_KEY = "objects/payload";
+
+    @Param({"0"})
+    private long latencyMicros;
+
+    @Param({"0.0"})
+    private double errorRate;
+
+    @Param({"1024", "1048576"})
+    private int payloadSize;
+
+    private S3BucketHelper helper;
+    private byte[] payload;
+    private byte[] readBuffer;
+    private List<String> deleteKeys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        final LocalAmazonS3 s3client = new LocalAmazonS3();
+        s3client.createBucket(BUCKET);
+        helper = new S3BucketHelper(BUCKET, s3client, 4);
+        payload = new byte[payloadSize];
+        ThreadLocalRandom.current().nextBytes(payload);
+        readBuffer = new byte[64 * 1024];
+        helper.uploadObject(new ByteArrayInputStream(payload), payload.length, OBJECT_KEY);
+        for (int i = 0; i < 1000; i++) {
+            helper.uploadObject(new ByteArrayInputStream(new byte[0]), 0, "listing/" + i);
+        }
+        deleteKeys = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            deleteKeys.add("deleted/" + i);
+        }
+        // faults only apply to the measured calls, not to the fixture
+        s3client.setFaultProfile(FaultProfile.builder()
+                .latency(LatencyDistribution.fixed(latencyMicros, TimeUnit.MICROSECONDS))
+                .errorRate(errorRate)
+                .build());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Benchmark
+    public void uploadObject(Blackhole bh) {
+        try {
+            helper.uploadObject(new ByteArrayInputStream(payload), payload.length, "uploads/payload");
+        } catch (Exception e) {
+            bh.consume(e);
+        }
+    }
+
+    @Benchmark
+    public long downloadObject(Blackhole bh) {
+        long read = 0;
+        try (S3ObjectInputStream in = helper.downloadObject(OBJECT_KEY)) {
+            int n;
+            while ((n = in.read(readBuffer)) != -1) {
+                read += n;
+            }
+        } catch (Exception e) {
+            bh.consume(e);
+        }
+        return read;
+    }
+
+    @Benchmark
+    public void listObjects(Blackhole bh) {
+        try {
+            bh.consume(helper.listObjects("listing/"));
+        } catch (Exception e) {
+            bh.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void checkKeyExists(Blackhole bh) {
+        try {
+            bh.consume(helper.checkKeyExists(OBJECT_KEY));
+        } catch (AmazonServiceException e) {
+            bh.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void deleteObjects(Blackhole bh) {
+        try {
+            helper.deleteObjects(deleteKeys);
+        } catch (Exception e) {
+            bh.consume(e);
+        }
+    }
+}
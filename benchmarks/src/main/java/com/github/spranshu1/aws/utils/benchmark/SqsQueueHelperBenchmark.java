@@ -0,0 +1,139 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.benchmark;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.PurgeQueueRequest;
+import com.github.spranshu1.aws.utils.local.FaultProfile;
+import com.github.spranshu1.aws.utils.local.LatencyDistribution;
+import com.github.spranshu1.aws.utils.local.LocalAmazonSQS;
+import com.github.spranshu1.aws.utils.sqs.SqsQueueHelper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SqsQueueHelper send, bulk send and receive/delete paths against {@link LocalAmazonSQS}, which enforces
+ * the SQS message and batch size limits.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SqsQueueHelperBenchmark {
+
+    private static final String QUEUE_NAME = "benchmark";
+
+    @Param({"0"})
+    private long latencyMicros;
+
+    @Param({"0.0"})
+    private double errorRate;
+
+    /** At most 25 KB, so that a batch of 10 stays under the 256 KB batch limit */
+    @Param({"256", "16384"})
+    private int messageSize;
+
+    private LocalAmazonSQS sqs;
+    private FaultProfile faultProfile;
+    private String queueUrl;
+    private SqsQueueHelper helper;
+    private String body;
+    private List<String> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sqs = new LocalAmazonSQS();
+        queueUrl = sqs.createQueue(QUEUE_NAME).getQueueUrl();
+        faultProfile = FaultProfile.builder()
+                .latency(LatencyDistribution.fixed(latencyMicros, TimeUnit.MICROSECONDS))
+                .errorRate(errorRate)
+                .build();
+        sqs.setFaultProfile(faultProfile);
+        helper = new SqsQueueHelper(queueUrl, sqs);
+        char[] chars = new char[messageSize];
+        Arrays.fill(chars, 'x');
+        body = new String(chars);
+        batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(body);
+        }
+    }
+
+    /**
+     * Drops the messages sent by the previous iteration so that send-only benchmarks run in bounded memory.
+     */
+    @Setup(Level.Iteration)
+    public void purge() {
+        sqs.setFaultProfile(FaultProfile.none());
+        sqs.purgeQueue(new PurgeQueueRequest(queueUrl));
+        sqs.setFaultProfile(faultProfile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        helper.shutdown();
+    }
+
+    @Benchmark
+    public void sendMessage(Blackhole bh) {
+        try {
+            bh.consume(helper.sendMessage(body));
+        } catch (AmazonServiceException e) {
+            bh.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void sendMessageBulk(Blackhole bh) {
+        try {
+            bh.consume(helper.sendMessageBulk(batch));
+        } catch (AmazonServiceException e) {
+            bh.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void sendReceiveDelete(Blackhole bh) {
+        try {
+            helper.sendMessageBulk(batch.subList(0, 10));
+            for (Message message : helper.receiveMessage()) {
+                helper.deleteMessage(message);
+                bh.consume(message);
+            }
+        } catch (AmazonServiceException e) {
+            bh.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void receiveEmpty(Blackhole bh) {
+        try {
+            bh.consume(helper.receiveMessage());
+        } catch (AmazonServiceException e) {
+            bh.consume(e);
+        }
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.client;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
+import com.github.spranshu1.aws.utils.metrics.AwsMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Registry of AWS clients shared by credentials, region and {@link ClientSettings}, so that callers
+ * creating services per tenant reuse one HTTP connection pool per distinct key instead of one per service.
+ * <p>
+ * Clients handed out by the registry are owned by it; release them through {@link #shutdown()} rather
+ * than shutting them down directly. Clients obtained with an {@link AWSCredentialsProvider} are keyed on the
+ * provider, which refreshes its credentials itself; pass a provider for STS or instance profile credentials.
+ * Clients obtained with fixed credentials are keyed on the access and secret key; a new session token for the
+ * same keys is handed to the existing client instead of creating another one.
+ */
+public class AwsClientRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AwsClientRegistry.class);
+
+    private static final AwsClientRegistry DEFAULT = new AwsClientRegistry(true);
+
+    private final ConcurrentMap<ClientKey, Shared<AmazonS3>> s3Clients = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ClientKey, Shared<AmazonSQS>> sqsClients = new ConcurrentHashMap<>();
+    private final boolean processWide;
+    private volatile boolean closed;
+
+    /**
+     * Instantiates a new client registry.
+     */
+    public AwsClientRegistry() {
+        this(false);
+    }
+
+    private AwsClientRegistry(final boolean processWide) {
+        this.processWide = processWide;
+    }
+
+    /**
+     * Process wide registry. It lives as long as the JVM and cannot be shut down, since any caller may
+     * still be using its clients.
+     *
+     * @return the default registry
+     */
+    public static AwsClientRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Gets the shared S3 client for the given key, creating it on first use.
+     *
+     * @param credentials the credentials
+     * @param region      the region, null for the default region provider chain
+     * @param settings    the client settings
+     * @return the s3 client
+     */
+    public AmazonS3 getS3Client(final AWSCredentials credentials, final Regions region, final ClientSettings settings) {
+        return client(s3Clients, ClientKey.of(credentials, region, settings), credentials,
+                provider -> newS3Client(provider, region, settings), AmazonS3::shutdown);
+    }
+
+    /**
+     * Gets the shared S3 client for the given key, creating it on first use. The client asks the provider
+     * for credentials on every request.
+     *
+     * @param credentialsProvider the credentials provider
+     * @param region              the region, null for the default region provider chain
+     * @param settings            the client settings
+     * @return the s3 client
+     */
+    public AmazonS3 getS3Client(final AWSCredentialsProvider credentialsProvider, final Regions region,
+                                final ClientSettings settings) {
+        return client(s3Clients, ClientKey.of(credentialsProvider, region, settings), null,
+                provider -> newS3Client(credentialsProvider, region, settings), AmazonS3::shutdown);
+    }
+
+    /**
+     * Gets the shared SQS client for the given key, creating it on first use.
+     *
+     * @param credentials the credentials
+     * @param region      the region, null for the default region provider chain
+     * @param settings    the client settings
+     * @return the sqs client
+     */
+    public AmazonSQS getSqsClient(final AWSCredentials credentials, final Regions region, final ClientSettings settings) {
+        return client(sqsClients, ClientKey.of(credentials, region, settings), credentials,
+                provider -> newSqsClient(provider, region, settings), AmazonSQS::shutdown);
+    }
+
+    /**
+     * Gets the shared SQS client for the given key, creating it on first use. The client asks the provider
+     * for credentials on every request.
+     *
+     * @param credentialsProvider the credentials provider
+     * @param region              the region, null for the default region provider chain
+     * @param settings            the client settings
+     * @return the sqs client
+     */
+    public AmazonSQS getSqsClient(final AWSCredentialsProvider credentialsProvider, final Regions region,
+                                  final ClientSettings settings) {
+        return client(sqsClients, ClientKey.of(credentialsProvider, region, settings), null,
+                provider -> newSqsClient(credentialsProvider, region, settings), AmazonSQS::shutdown);
+    }
+
+    /**
+     * Opens up to 'connections' pooled connections of the shared S3 client by issuing concurrent
+     * lightweight requests, so the first real request does not pay for the TLS handshake.
+     *
+     * @param credentials the credentials
+     * @param region      the region, null for the default region provider chain
+     * @param settings    the client settings
+     * @param connections the number of connections to open
+     * @return the warmed up s3 client
+     */
+    public AmazonS3 warmUpS3(final AWSCredentials credentials, final Regions region,
+                             final ClientSettings settings, final int connections) {
+        final AmazonS3 s3client = getS3Client(credentials, region, settings);
+        warmUp("S3", () -> s3client.listBuckets(), Math.min(connections, settings.getMaxConnections()));
+        return s3client;
+    }
+
+    /**
+     * Opens up to 'connections' pooled connections of the shared SQS client by issuing concurrent
+     * lightweight requests, so the first real request does not pay for the TLS handshake.
+     *
+     * @param credentials the credentials
+     * @param region      the region, null for the default region provider chain
+     * @param settings    the client settings
+     * @param connections the number of connections to open
+     * @return the warmed up sqs client
+     */
+    public AmazonSQS warmUpSqs(final AWSCredentials credentials, final Regions region,
+                               final ClientSettings settings, final int connections) {
+        final AmazonSQS sqs = getSqsClient(credentials, region, settings);
+        warmUp("SQS", () -> sqs.listQueues(), Math.min(connections, settings.getMaxConnections()));
+        return sqs;
+    }
+
+    /**
+     * Shuts down every client created by this registry and forgets them. The registry hands out no
+     * client afterwards.
+     *
+     * @throws UnsupportedOperationException on the {@link #getDefault() default registry}
+     */
+    public void shutdown() {
+        if (processWide) {
+            throw new UnsupportedOperationException("The default client registry cannot be shut down");
+        }
+        closed = true;
+        for (Map.Entry<ClientKey, Shared<AmazonS3>> entry : s3Clients.entrySet()) {
+            if (s3Clients.remove(entry.getKey(), entry.getValue())) {
+                shutdown(entry.getValue().client::shutdown);
+            }
+        }
+        for (Map.Entry<ClientKey, Shared<AmazonSQS>> entry : sqsClients.entrySet()) {
+            if (sqsClients.remove(entry.getKey(), entry.getValue())) {
+                shutdown(entry.getValue().client::shutdown);
+            }
+        }
+    }
+
+    private <C> C client(final ConcurrentMap<ClientKey, Shared<C>> clients, final ClientKey clientKey,
+                         final AWSCredentials credentials, final Function<AWSCredentialsProvider, C> factory,
+                         final Consumer<C> shutdown) {
+        checkOpen();
+        final Shared<C> shared = clients.computeIfAbsent(clientKey, key -> {
+            if (credentials == null) {
+                return new Shared<>(factory.apply(null), null);
+            }
+            final CurrentCredentialsProvider provider = new CurrentCredentialsProvider(credentials);
+            return new Shared<>(factory.apply(provider), provider);
+        });
+        if (shared.credentials != null) {
+            // same keys, possibly a newer session token
+            shared.credentials.update(credentials);
+        }
+        if (closed && clients.remove(clientKey, shared)) {
+            // created while the registry was shutting down
+            shutdown(() -> shutdown.accept(shared.client));
+        }
+        checkOpen();
+        return shared.client;
+    }
+
+    private static AmazonS3 newS3Client(final AWSCredentialsProvider credentialsProvider, final Regions region,
+                                        final ClientSettings settings) {
+        final AmazonS3ClientBuilder builder = AmazonS3ClientBuilder.standard()
+                .withClientConfiguration(settings.toClientConfiguration())
+                .withCredentials(credentialsProvider)
+                .withRequestHandlers(AwsMetrics.requestHandler());
+        if (region != null) {
+            builder.withRegion(region);
+        }
+        return builder.build();
+    }
+
+    private static AmazonSQS newSqsClient(final AWSCredentialsProvider credentialsProvider, final Regions region,
+                                          final ClientSettings settings) {
+        final AmazonSQSClientBuilder builder = AmazonSQSClientBuilder.standard()
+                .withClientConfiguration(settings.toClientConfiguration())
+                .withCredentials(credentialsProvider)
+                .withRequestHandlers(AwsMetrics.requestHandler());
+        if (region != null) {
+            builder.withRegion(region);
+        }
+        return builder.build();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Client registry has been shut down");
+        }
+    }
+
+    private void shutdown(final Runnable shutdown) {
+        try {
+            shutdown.run();
+        } catch (Exception e) {
+            LOGGER.error("Client could not be shut down due to exception {}", e.getMessage());
+        }
+    }
+
+    private void warmUp(final String service, final Runnable probe, final int connections) {
+        if (connections <= 0) {
+            return;
+        }
+        // all probes start together so that each one has to lease its own pooled connection
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(connections);
+        try {
+            for (int i = 0; i < connections; i++) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                        probe.run();
+                    } catch (AmazonServiceException e) {
+                        // an error response still means the connection was established
+                        LOGGER.debug("{} warm up request returned {}", service, e.getErrorCode());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (Exception e) {
+                        LOGGER.error("{} warm up request failed due to exception {}", service, e.getMessage());
+                    }
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static final class Shared<C> {
+        private final C client;
+        private final CurrentCredentialsProvider credentials;
+
+        private Shared(final C client, final CurrentCredentialsProvider credentials) {
+            this.client = client;
+            this.credentials = credentials;
+        }
+    }
+
+    /**
+     * Provider of the fixed credentials a client was last requested with.
+     */
+    private static final class CurrentCredentialsProvider implements AWSCredentialsProvider {
+        private volatile AWSCredentials credentials;
+
+        private CurrentCredentialsProvider(final AWSCredentials credentials) {
+            this.credentials = credentials;
+        }
+
+        private void update(final AWSCredentials latest) {
+            credentials = latest;
+        }
+
+        @Override
+        public AWSCredentials getCredentials() {
+            return credentials;
+        }
+
+        @Override
+        public void refresh() {
+            // the caller hands in refreshed credentials
+        }
+    }
+
+    private static final class ClientKey {
+        private final Object identity;
+        private final Regions region;
+        private final ClientSettings settings;
+
+        private ClientKey(final Object identity, final Regions region, final ClientSettings settings) {
+            this.identity = identity;
+            this.region = region;
+            this.settings = Objects.requireNonNull(settings, "settings");
+        }
+
+        private static ClientKey of(final AWSCredentials credentials, final Regions region,
+                                    final ClientSettings settings) {
+            return new ClientKey(Arrays.asList(credentials.getAWSAccessKeyId(), credentials.getAWSSecretKey()),
+                    region, settings);
+        }
+
+        private static ClientKey of(final AWSCredentialsProvider credentialsProvider, final Regions region,
+                                    final ClientSettings settings) {
+            return new ClientKey(new ProviderIdentity(credentialsProvider), region, settings);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ClientKey that = (ClientKey) o;
+            return identity.equals(that.identity)
+                    && region == that.region
+                    && settings.equals(that.settings);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(identity, region, settings);
+        }
+    }
+
+    /**
+     * A provider is the same key only as the same instance.
+     */
+    private static final class ProviderIdentity {
+        private final AWSCredentialsProvider provider;
+
+        private ProviderIdentity(final AWSCredentialsProvider provider) {
+            this.provider = Objects.requireNonNull(provider, "credentialsProvider");
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ProviderIdentity && ((ProviderIdentity) o).provider == provider;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(provider);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.client;
+
+import com.amazonaws.ClientConfiguration;
+
+import java.util.Objects;
+
+/**
+ * Connection settings of a shared AWS client (pool size, keep-alive and TCP options).
+ * Two settings instances with the same values share the same client in {@link AwsClientRegistry}.
+ */
+public final class ClientSettings {
+
+    private final int maxConnections;
+    private final long connectionTtlMillis;
+    private final long connectionMaxIdleMillis;
+    private final int validateAfterInactivityMillis;
+    private final int connectionTimeoutMillis;
+    private final int socketTimeoutMillis;
+    private final boolean tcpKeepAlive;
+    private final boolean useReaper;
+    private final int maxErrorRetry;
+
+    private ClientSettings(final Builder builder) {
+        this.maxConnections = builder.maxConnections;
+        this.connectionTtlMillis = builder.connectionTtlMillis;
+        this.connectionMaxIdleMillis = builder.connectionMaxIdleMillis;
+        this.validateAfterInactivityMillis = builder.validateAfterInactivityMillis;
+        this.connectionTimeoutMillis = builder.connectionTimeoutMillis;
+        this.socketTimeoutMillis = builder.socketTimeoutMillis;
+        this.tcpKeepAlive = builder.tcpKeepAlive;
+        this.useReaper = builder.useReaper;
+        this.maxErrorRetry = builder.maxErrorRetry;
+    }
+
+    /**
+     * Settings equal to the AWS SDK defaults.
+     *
+     * @return the default settings
+     */
+    public static ClientSettings defaults() {
+        return builder().build();
+    }
+
+    /**
+     * New builder initialised with the AWS SDK defaults.
+     *
+     * @return the builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Creates the AWS client configuration for these settings.
+     *
+     * @return the client configuration
+     */
+    public ClientConfiguration toClientConfiguration() {
+        final ClientConfiguration configuration = new ClientConfiguration()
+                .withMaxConnections(maxConnections)
+                .withConnectionTTL(connectionTtlMillis)
+                .withConnectionMaxIdleMillis(connectionMaxIdleMillis)
+                .withValidateAfterInactivityMillis(validateAfterInactivityMillis)
+                .withConnectionTimeout(connectionTimeoutMillis)
+                .withSocketTimeout(socketTimeoutMillis)
+                .withTcpKeepAlive(tcpKeepAlive)
+                .withReaper(useReaper);
+        if (maxErrorRetry >= 0) {
+            configuration.setMaxErrorRetry(maxErrorRetry);
+        }
+        return configuration;
+    }
+
+    /**
+     * Gets max connections.
+     *
+     * @return the max connections
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Gets connection ttl millis.
+     *
+     * @return the connection ttl millis
+     */
+    public long getConnectionTtlMillis() {
+        return connectionTtlMillis;
+    }
+
+    /**
+     * Gets connection max idle millis.
+     *
+     * @return the connection max idle millis
+     */
+    public long getConnectionMaxIdleMillis() {
+        return connectionMaxIdleMillis;
+    }
+
+    /**
+     * Gets validate after inactivity millis.
+     *
+     * @return the validate after inactivity millis
+     */
+    public int getValidateAfterInactivityMillis() {
+        return validateAfterInactivityMillis;
+    }
+
+    /**
+     * Gets connection timeout millis.
+     *
+     * @return the connection timeout millis
+     */
+    public int getConnectionTimeoutMillis() {
+        return connectionTimeoutMillis;
+    }
+
+    /**
+     * Gets socket timeout millis.
+     *
+     * @return the socket timeout millis
+     */
+    public int getSocketTimeoutMillis() {
+        return socketTimeoutMillis;
+    }
+
+    /**
+     * Is tcp keep alive.
+     *
+     * @return the boolean
+     */
+    public boolean isTcpKeepAlive() {
+        return tcpKeepAlive;
+    }
+
+    /**
+     * Is idle connection reaper used.
+     *
+     * @return the boolean
+     */
+    public boolean isUseReaper() {
+        return useReaper;
+    }
+
+    /**
+     * Gets max error retry.
+     *
+     * @return the max error retry
+     */
+    public int getMaxErrorRetry() {
+        return maxErrorRetry;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ClientSettings that = (ClientSettings) o;
+        return maxConnections == that.maxConnections
+                && connectionTtlMillis == that.connectionTtlMillis
+                && connectionMaxIdleMillis == that.connectionMaxIdleMillis
+                && validateAfterInactivityMillis == that.validateAfterInactivityMillis
+                && connectionTimeoutMillis == that.connectionTimeoutMillis
+                && socketTimeoutMillis == that.socketTimeoutMillis
+                && tcpKeepAlive == that.tcpKeepAlive
+                && useReaper == that.useReaper
+                && maxErrorRetry == that.maxErrorRetry;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(maxConnections, connectionTtlMillis, connectionMaxIdleMillis,
+                validateAfterInactivityMillis, connectionTimeoutMillis, socketTimeoutMillis,
+                tcpKeepAlive, useReaper, maxErrorRetry);
+    }
+
+    /**
+     * Builder for {@link ClientSettings}.
+     */
+    public static final class Builder {
+        private int maxConnections = ClientConfiguration.DEFAULT_MAX_CONNECTIONS;
+        private long connectionTtlMillis = ClientConfiguration.DEFAULT_CONNECTION_TTL;
+        private long connectionMaxIdleMillis = ClientConfiguration.DEFAULT_CONNECTION_MAX_IDLE_MILLIS;
+        private int validateAfterInactivityMillis = ClientConfiguration.DEFAULT_VALIDATE_AFTER_INACTIVITY_MILLIS;
+        private int connectionTimeoutMillis = ClientConfiguration.DEFAULT_CONNECTION_TIMEOUT;
+        private int socketTimeoutMillis = ClientConfiguration.DEFAULT_SOCKET_TIMEOUT;
+        private boolean tcpKeepAlive = ClientConfiguration.DEFAULT_TCP_KEEP_ALIVE;
+        private boolean useReaper = ClientConfiguration.DEFAULT_USE_REAPER;
+        private int maxErrorRetry = -1;
+
+        private Builder() {
+        }
+
+        /**
+         * Maximum number of open HTTP connections in the pool.
+         *
+         * @param maxConnections the max connections
+         * @return the builder
+         */
+        public Builder maxConnections(final int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        /**
+         * Time to live of a pooled connection, -1 for no expiry.
+         *
+         * @param connectionTtlMillis the connection ttl millis
+         * @return the builder
+         */
+        public Builder connectionTtlMillis(final long connectionTtlMillis) {
+            this.connectionTtlMillis = connectionTtlMillis;
+            return this;
+        }
+
+        /**
+         * Idle time after which a pooled connection is closed.
+         *
+         * @param connectionMaxIdleMillis the connection max idle millis
+         * @return the builder
+         */
+        public Builder connectionMaxIdleMillis(final long connectionMaxIdleMillis) {
+            this.connectionMaxIdleMillis = connectionMaxIdleMillis;
+            return this;
+        }
+
+        /**
+         * Idle time after which a pooled connection is validated before reuse.
+         *
+         * @param validateAfterInactivityMillis the validate after inactivity millis
+         * @return the builder
+         */
+        public Builder validateAfterInactivityMillis(final int validateAfterInactivityMillis) {
+            this.validateAfterInactivityMillis = validateAfterInactivityMillis;
+            return this;
+        }
+
+        /**
+         * Timeout for establishing a connection.
+         *
+         * @param connectionTimeoutMillis the connection timeout millis
+         * @return the builder
+         */
+        public Builder connectionTimeoutMillis(final int connectionTimeoutMillis) {
+            this.connectionTimeoutMillis = connectionTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * Timeout for reading data from an open connection.
+         *
+         * @param socketTimeoutMillis the socket timeout millis
+         * @return the builder
+         */
+        public Builder socketTimeoutMillis(final int socketTimeoutMillis) {
+            this.socketTimeoutMillis = socketTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * Enables TCP keep-alive on pooled sockets.
+         *
+         * @param tcpKeepAlive the tcp keep alive
+         * @return the builder
+         */
+        public Builder tcpKeepAlive(final boolean tcpKeepAlive) {
+            this.tcpKeepAlive = tcpKeepAlive;
+            return this;
+        }
+
+        /**
+         * Enables the background reaper that closes idle connections.
+         *
+         * @param useReaper the use reaper
+         * @return the builder
+         */
+        public Builder useReaper(final boolean useReaper) {
+            this.useReaper = useReaper;
+            return this;
+        }
+
+        /**
+         * Maximum retries on retryable errors, -1 for the service default.
+         *
+         * @param maxErrorRetry the max error retry
+         * @return the builder
+         */
+        public Builder maxErrorRetry(final int maxErrorRetry) {
+            this.maxErrorRetry = maxErrorRetry;
+            return this;
+        }
+
+        /**
+         * Build client settings.
+         *
+         * @return the client settings
+         */
+        public ClientSettings build() {
+            if (maxConnections <= 0) {
+                throw new IllegalArgumentException("maxConnections must be positive");
+            }
+            return new ClientSettings(this);
+        }
+    }
+}
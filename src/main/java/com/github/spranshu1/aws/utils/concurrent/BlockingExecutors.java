@@ -0,0 +1,158 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for blocking AWS calls in either {@link ExecutionMode}.
+ * <p>
+ * The library targets Java 8, so virtual threads are looked up reflectively: on a Java 21 runtime
+ * {@link ExecutionMode#VIRTUAL} runs each task on a virtual thread, elsewhere it falls back to platform threads.
+ * The AWS client connection pool still bounds the requests actually in flight; size 'maxConnections'
+ * of the client to the concurrency asked for here.
+ */
+public final class BlockingExecutors {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BlockingExecutors.class);
+
+    private static final Method OF_VIRTUAL = virtualThreadMethod("java.lang.Thread", "ofVirtual");
+    private static final Method NAME = virtualThreadMethod("java.lang.Thread$Builder", "name", String.class, long.class);
+    private static final Method FACTORY = virtualThreadMethod("java.lang.Thread$Builder", "factory");
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR = virtualThreadMethod("java.util.concurrent.Executors",
+            "newThreadPerTaskExecutor", ThreadFactory.class);
+    private static final boolean VIRTUAL_THREADS = probe();
+    private static final AtomicBoolean FALLBACK_LOGGED = new AtomicBoolean();
+
+    private BlockingExecutors() {
+    }
+
+    /**
+     * Whether this runtime supports virtual threads.
+     *
+     * @return true on Java 21 and later
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return VIRTUAL_THREADS;
+    }
+
+    /**
+     * The mode actually used for 'requested' on this runtime.
+     *
+     * @param requested the requested mode
+     * @return the effective mode
+     */
+    public static ExecutionMode effectiveMode(final ExecutionMode requested) {
+        return requested == ExecutionMode.VIRTUAL && VIRTUAL_THREADS ? ExecutionMode.VIRTUAL : ExecutionMode.PLATFORM;
+    }
+
+    /**
+     * New executor running at most 'maxConcurrency' tasks at a time: a fixed pool of platform threads,
+     * or a virtual thread per task behind a semaphore.
+     *
+     * @param mode           the mode
+     * @param maxConcurrency the max concurrency
+     * @param namePrefix     the thread name prefix
+     * @param daemon         whether platform threads are daemon threads (virtual threads always are)
+     * @return the executor service
+     */
+    public static ExecutorService newExecutor(final ExecutionMode mode, final int maxConcurrency,
+                                              final String namePrefix, final boolean daemon) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+        if (effectiveMode(mode) == ExecutionMode.VIRTUAL) {
+            try {
+                final ExecutorService perTask = (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null,
+                        virtualThreadFactory(namePrefix));
+                return new BoundedExecutorService(perTask, maxConcurrency);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                LOGGER.warn("Virtual threads could not be created, using platform threads: {}", e.getMessage());
+            }
+        } else if (mode == ExecutionMode.VIRTUAL && FALLBACK_LOGGED.compareAndSet(false, true)) {
+            LOGGER.warn("Virtual threads need Java 21, platform threads are used instead");
+        }
+        return Executors.newFixedThreadPool(maxConcurrency, platformThreadFactory(namePrefix, daemon));
+    }
+
+    /**
+     * Thread factory for long-lived loops such as pollers: virtual threads in {@link ExecutionMode#VIRTUAL}
+     * when supported, platform threads otherwise.
+     *
+     * @param mode       the mode
+     * @param namePrefix the thread name prefix
+     * @param daemon     whether platform threads are daemon threads
+     * @return the thread factory
+     */
+    public static ThreadFactory newThreadFactory(final ExecutionMode mode, final String namePrefix,
+                                                 final boolean daemon) {
+        if (effectiveMode(mode) == ExecutionMode.VIRTUAL) {
+            try {
+                return virtualThreadFactory(namePrefix);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                LOGGER.warn("Virtual threads could not be created, using platform threads: {}", e.getMessage());
+            }
+        } else if (mode == ExecutionMode.VIRTUAL && FALLBACK_LOGGED.compareAndSet(false, true)) {
+            LOGGER.warn("Virtual threads need Java 21, platform threads are used instead");
+        }
+        return platformThreadFactory(namePrefix, daemon);
+    }
+
+    private static ThreadFactory platformThreadFactory(final String namePrefix, final boolean daemon) {
+        final AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, namePrefix + "-" + count.incrementAndGet());
+            thread.setDaemon(daemon);
+            return thread;
+        };
+    }
+
+    private static ThreadFactory virtualThreadFactory(final String namePrefix) throws ReflectiveOperationException {
+        final Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix + "-", 1L);
+        return (ThreadFactory) FACTORY.invoke(builder);
+    }
+
+    private static Method virtualThreadMethod(final String className, final String name, final Class<?>... parameterTypes) {
+        try {
+            return Class.forName(className).getMethod(name, parameterTypes);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    private static boolean probe() {
+        if (OF_VIRTUAL == null || NAME == null || FACTORY == null || NEW_THREAD_PER_TASK_EXECUTOR == null) {
+            return false;
+        }
+        try {
+            // Java 19 and 20 have the methods as a preview feature that fails when not enabled
+            virtualThreadFactory("probe");
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            return false;
+        }
+    }
+}
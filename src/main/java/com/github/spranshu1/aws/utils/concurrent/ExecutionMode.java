@@ -0,0 +1,33 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.concurrent;
+
+/**
+ * How blocking AWS calls (transfers, HEAD fan-outs, long polls) are run.
+ */
+public enum ExecutionMode {
+
+    /** Pooled platform threads; the pool size bounds concurrency. */
+    PLATFORM,
+
+    /**
+     * One virtual thread per task and a semaphore bounding concurrency. Needs a Java 21 runtime; older
+     * runtimes fall back to {@link #PLATFORM}.
+     */
+    VIRTUAL
+}
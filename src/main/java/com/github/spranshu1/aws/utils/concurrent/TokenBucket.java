@@ -0,0 +1,107 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter, used to keep concurrent callers under an AWS API request rate.
+ * Tokens are refilled continuously at 'permitsPerSecond' up to 'burst'; callers that find the
+ * bucket empty reserve a future token and sleep until it is due.
+ */
+public class TokenBucket {
+
+    private final double permitsPerNano;
+    private final double burst;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Instantiates a new token bucket that starts full.
+     *
+     * @param permitsPerSecond the permits per second
+     * @param burst            the max number of permits available at once
+     */
+    public TokenBucket(final double permitsPerSecond, final int burst) {
+        if (permitsPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond and burst must be positive");
+        }
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Takes one permit, waiting until it is available.
+     *
+     * @throws InterruptedException the interrupted exception
+     */
+    public void acquire() throws InterruptedException {
+        acquire(1);
+    }
+
+    /**
+     * Takes 'permits' permits at once, waiting until they are available.
+     *
+     * @param permits the permits
+     * @throws InterruptedException the interrupted exception
+     */
+    public void acquire(final int permits) throws InterruptedException {
+        final long waitNanos = reserve(permits);
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Gives back permits that were taken but not used, up to the burst.
+     *
+     * @param permits the permits
+     */
+    public synchronized void release(final int permits) {
+        refill();
+        tokens = Math.min(burst, tokens + permits);
+    }
+
+    /**
+     * Takes one permit if it is available right now.
+     *
+     * @return true if a permit was taken
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized long reserve(final int permits) {
+        refill();
+        tokens -= permits;
+        return tokens >= 0 ? 0 : (long) (-tokens / permitsPerNano);
+    }
+
+    private void refill() {
+        final long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * permitsPerNano);
+        lastRefill = now;
+    }
+}
@@ -19,11 +19,28 @@ package com.github.spranshu1.aws.utils.iam;
 
 import com.amazonaws.services.identitymanagement.AmazonIdentityManagement;
 import com.amazonaws.services.identitymanagement.model.*;
+import com.github.spranshu1.aws.utils.concurrent.BlockingExecutors;
+import com.github.spranshu1.aws.utils.concurrent.ExecutionMode;
+import com.github.spranshu1.aws.utils.concurrent.TokenBucket;
+import com.github.spranshu1.aws.utils.metrics.AwsMetrics;
+import com.github.spranshu1.aws.utils.metrics.Operation;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
 /**
@@ -31,7 +48,14 @@ import java.util.stream.Collectors;
  */
 public class IAMHelper {
 
+    private static final int DEFAULT_BULK_PARALLELISM = 8;
+
     private final AmazonIdentityManagement amazonIdentityManagement;
+    private final PolicyIndex policyIndex;
+    private final IamAccountSnapshot snapshot;
+    /** Shared by all bulk calls of this helper; idle workers time out so an unused helper holds no threads */
+    private final ThreadPoolExecutor bulkExecutor;
+    private volatile TokenBucket bulkLimiter = new TokenBucket(10, DEFAULT_BULK_PARALLELISM);
 
     /**
      * Instantiates a new Iam discovery.
@@ -39,7 +63,65 @@ public class IAMHelper {
      * @param amazonIdentityManagement the amazon identity management
      */
     public IAMHelper(AmazonIdentityManagement amazonIdentityManagement) {
+        this(amazonIdentityManagement, null, null);
+    }
+
+    /**
+     * Instantiates a new Iam discovery answering policy lookups from an index.
+     *
+     * @param amazonIdentityManagement the amazon identity management
+     * @param policyIndex              the policy index, null to list policies on every lookup
+     */
+    public IAMHelper(AmazonIdentityManagement amazonIdentityManagement, PolicyIndex policyIndex) {
+        this(amazonIdentityManagement, policyIndex, null);
+    }
+
+    private IAMHelper(AmazonIdentityManagement amazonIdentityManagement, PolicyIndex policyIndex,
+                      IamAccountSnapshot snapshot) {
         this.amazonIdentityManagement = amazonIdentityManagement;
+        this.policyIndex = policyIndex;
+        this.snapshot = snapshot;
+        this.bulkExecutor = new ThreadPoolExecutor(DEFAULT_BULK_PARALLELISM, DEFAULT_BULK_PARALLELISM,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                BlockingExecutors.newThreadFactory(ExecutionMode.PLATFORM, "iam-bulk-lookup", true));
+        this.bulkExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Creates an Iam discovery answering role, instance profile and policy lookups from an account snapshot.
+     * The client is only used for lookups the snapshot does not cover (account aliases, server certificates).
+     *
+     * @param amazonIdentityManagement the amazon identity management
+     * @param snapshot                 the account snapshot
+     * @return the iam helper
+     */
+    public static IAMHelper withSnapshot(AmazonIdentityManagement amazonIdentityManagement,
+                                         IamAccountSnapshot snapshot) {
+        return new IAMHelper(amazonIdentityManagement, null, Objects.requireNonNull(snapshot, "snapshot"));
+    }
+
+    /**
+     * Set the limits used by the bulk lookups: at most 'parallelism' concurrent requests and
+     * 'requestsPerSecond' requests per second across all bulk calls of this helper
+     *
+     * @param parallelism       the parallelism
+     * @param requestsPerSecond the requests per second
+     */
+    public void setBulkLookupLimits(final int parallelism, final double requestsPerSecond) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        synchronized (bulkExecutor) {
+            // the core size may never exceed the max size, so grow the max first and shrink it last
+            if (parallelism > bulkExecutor.getMaximumPoolSize()) {
+                bulkExecutor.setMaximumPoolSize(parallelism);
+                bulkExecutor.setCorePoolSize(parallelism);
+            } else {
+                bulkExecutor.setCorePoolSize(parallelism);
+                bulkExecutor.setMaximumPoolSize(parallelism);
+            }
+        }
+        this.bulkLimiter = new TokenBucket(requestsPerSecond, parallelism);
     }
 
     /**
@@ -48,7 +130,8 @@ public class IAMHelper {
      * @return the list
      */
     public List<String> listAccountAliases() {
-        return amazonIdentityManagement.listAccountAliases().getAccountAliases();
+        return call(Operation.IAM_LIST_ACCOUNT_ALIASES, AmazonIdentityManagement::listAccountAliases,
+                new ListAccountAliasesRequest(), null).getAccountAliases();
     }
 
     /**
@@ -69,10 +152,7 @@ public class IAMHelper {
      */
     public Optional<String> getRoleArn(final String roleName) {
         try {
-            GetRoleRequest request = new GetRoleRequest()
-                    .withRoleName(roleName);
-            GetRoleResult result = amazonIdentityManagement.getRole(request);
-            return Optional.of(result.getRole().getArn());
+            return roleArn(roleName, null);
         } catch (AmazonIdentityManagementException e) {
             return Optional.empty();
         }
@@ -96,10 +176,7 @@ public class IAMHelper {
      */
     public Optional<String> getInstanceProfileArn(final String instanceProfileName) {
         try {
-            final GetInstanceProfileRequest request = new GetInstanceProfileRequest()
-                    .withInstanceProfileName(instanceProfileName);
-            final GetInstanceProfileResult result = amazonIdentityManagement.getInstanceProfile(request);
-            return Optional.of(result.getInstanceProfile().getArn());
+            return instanceProfileArn(instanceProfileName, null);
         } catch (AmazonIdentityManagementException e) {
             return Optional.empty();
         }
@@ -122,12 +199,20 @@ public class IAMHelper {
      * @return the policy arn
      */
     public Optional<String> getPolicyArn(final String policyName) {
+        if (snapshot != null) {
+            return snapshot.getPolicyArn(policyName);
+        }
+        if (policyIndex != null) {
+            return policyIndex.getPolicyArn(policyName);
+        }
         String marker = null;
         Optional<String> policy;
         ListPoliciesResult result;
         do {
-            result = amazonIdentityManagement.listPolicies(new ListPoliciesRequest()
-                    .withMarker(marker));
+            final ListPoliciesRequest request = new ListPoliciesRequest()
+                    .withMaxItems(PolicyIndex.MAX_ITEMS)
+                    .withMarker(marker);
+            result = call(Operation.IAM_LIST_POLICIES, AmazonIdentityManagement::listPolicies, request, null);
             policy = result.getPolicies().stream()
                     .filter(p -> policyName.equals(p.getPolicyName()))
                     .findFirst()
@@ -145,13 +230,8 @@ public class IAMHelper {
      * @return the attached policies arns for role
      */
     public List<String> getAttachedPoliciesArnsForRole(final String roleName) {
-        final ListAttachedRolePoliciesRequest request = new ListAttachedRolePoliciesRequest().withRoleName(roleName);
         try {
-            ListAttachedRolePoliciesResult result = amazonIdentityManagement.listAttachedRolePolicies(request);
-            return result.getAttachedPolicies()
-                    .stream()
-                    .map(AttachedPolicy::getPolicyArn)
-                    .collect(Collectors.toList());
+            return attachedPoliciesArns(roleName, null);
         } catch (AmazonIdentityManagementException e) {
             return Collections.emptyList();
         }
@@ -164,9 +244,13 @@ public class IAMHelper {
      * @return the instance profile roles
      */
     public List<String> getInstanceProfileRoles(final String profileName) {
+        if (snapshot != null) {
+            return snapshot.getInstanceProfileRoles(profileName);
+        }
         GetInstanceProfileRequest request = new GetInstanceProfileRequest().withInstanceProfileName(profileName);
         try {
-            GetInstanceProfileResult result = amazonIdentityManagement.getInstanceProfile(request);
+            GetInstanceProfileResult result = call(Operation.IAM_GET_INSTANCE_PROFILE,
+                    AmazonIdentityManagement::getInstanceProfile, request, null);
             return result.getInstanceProfile()
                     .getRoles()
                     .stream()
@@ -177,6 +261,61 @@ public class IAMHelper {
         }
     }
 
+    /**
+     * Check which of the roles are present, resolving them concurrently. Unlike {@link #hasRole(String)},
+     * only a missing role counts as absent; any other IAM error fails the whole call.
+     *
+     * @param roleNames the role names
+     * @return role name to presence, in input order
+     */
+    public Map<String, Boolean> hasRoles(final Collection<String> roleNames) {
+        return present(getRoleArns(roleNames));
+    }
+
+    /**
+     * Gets role arns, resolving them concurrently. Unlike {@link #getRoleArn(String)}, only a missing role
+     * maps to empty; any other IAM error fails the whole call.
+     *
+     * @param roleNames the role names
+     * @return role name to role arn, in input order
+     */
+    public Map<String, Optional<String>> getRoleArns(final Collection<String> roleNames) {
+        return resolveAll(roleNames, this::roleArn);
+    }
+
+    /**
+     * Check which of the instance profiles are present, resolving them concurrently. Only a missing
+     * instance profile counts as absent; any other IAM error fails the whole call.
+     *
+     * @param instanceProfileNames the instance profile names
+     * @return instance profile name to presence, in input order
+     */
+    public Map<String, Boolean> hasInstanceProfiles(final Collection<String> instanceProfileNames) {
+        return present(getInstanceProfileArns(instanceProfileNames));
+    }
+
+    /**
+     * Gets instance profile arns, resolving them concurrently. Only a missing instance profile maps to
+     * empty; any other IAM error fails the whole call.
+     *
+     * @param instanceProfileNames the instance profile names
+     * @return instance profile name to instance profile arn, in input order
+     */
+    public Map<String, Optional<String>> getInstanceProfileArns(final Collection<String> instanceProfileNames) {
+        return resolveAll(instanceProfileNames, this::instanceProfileArn);
+    }
+
+    /**
+     * Gets attached policies arns for each role, resolving them concurrently. Only a missing role maps
+     * to an empty list; any other IAM error fails the whole call.
+     *
+     * @param roleNames the role names
+     * @return role name to attached policies arns, in input order
+     */
+    public Map<String, List<String>> getAttachedPoliciesArnsForRoles(final Collection<String> roleNames) {
+        return resolveAll(roleNames, this::attachedPoliciesArns);
+    }
+
     /**
      * Gets server certificate arn.
      *
@@ -184,12 +323,166 @@ public class IAMHelper {
      * @return the server certificate arn
      */
     public Optional<String> getServerCertificateArn(final String certificateName) {
-        final ListServerCertificatesResult result = amazonIdentityManagement.listServerCertificates();
-        return result.getServerCertificateMetadataList()
-                .stream()
-                .filter(serviceCertificate ->
-                        Objects.equals(certificateName, serviceCertificate.getServerCertificateName()))
-                .map(ServerCertificateMetadata::getArn)
-                .findFirst();
-    }
-}
\ No newline at end of file
+        String marker = null;
+        Optional<String> certificate;
+        ListServerCertificatesResult result;
+        do {
+            final ListServerCertificatesRequest request = new ListServerCertificatesRequest()
+                    .withMarker(marker);
+            result = call(Operation.IAM_LIST_SERVER_CERTIFICATES,
+                    AmazonIdentityManagement::listServerCertificates, request, null);
+            certificate = result.getServerCertificateMetadataList()
+                    .stream()
+                    .filter(serviceCertificate ->
+                            Objects.equals(certificateName, serviceCertificate.getServerCertificateName()))
+                    .map(ServerCertificateMetadata::getArn)
+                    .findFirst();
+            marker = result.getMarker();
+        } while (!certificate.isPresent() && Boolean.TRUE.equals(result.isTruncated()));
+
+        return certificate;
+    }
+
+    private Optional<String> roleArn(final String roleName, final TokenBucket limiter) {
+        if (snapshot != null) {
+            return snapshot.getRoleArn(roleName);
+        }
+        try {
+            GetRoleRequest request = new GetRoleRequest()
+                    .withRoleName(roleName);
+            GetRoleResult result = call(Operation.IAM_GET_ROLE, AmazonIdentityManagement::getRole, request, limiter);
+            return Optional.of(result.getRole().getArn());
+        } catch (NoSuchEntityException e) {
+            return Optional.empty();
+        }
+    }
+
+    private Optional<String> instanceProfileArn(final String instanceProfileName, final TokenBucket limiter) {
+        if (snapshot != null) {
+            return snapshot.getInstanceProfileArn(instanceProfileName);
+        }
+        try {
+            final GetInstanceProfileRequest request = new GetInstanceProfileRequest()
+                    .withInstanceProfileName(instanceProfileName);
+            final GetInstanceProfileResult result = call(Operation.IAM_GET_INSTANCE_PROFILE,
+                    AmazonIdentityManagement::getInstanceProfile, request, limiter);
+            return Optional.of(result.getInstanceProfile().getArn());
+        } catch (NoSuchEntityException e) {
+            return Optional.empty();
+        }
+    }
+
+    private List<String> attachedPoliciesArns(final String roleName, final TokenBucket limiter) {
+        if (snapshot != null) {
+            return snapshot.getAttachedPoliciesArnsForRole(roleName);
+        }
+        final List<String> policyArns = new ArrayList<>();
+        String marker = null;
+        ListAttachedRolePoliciesResult result;
+        try {
+            do {
+                final ListAttachedRolePoliciesRequest request = new ListAttachedRolePoliciesRequest()
+                        .withRoleName(roleName)
+                        .withMarker(marker);
+                result = call(Operation.IAM_LIST_ATTACHED_ROLE_POLICIES,
+                        AmazonIdentityManagement::listAttachedRolePolicies, request, limiter);
+                for (AttachedPolicy policy : result.getAttachedPolicies()) {
+                    policyArns.add(policy.getPolicyArn());
+                }
+                marker = result.getMarker();
+            } while (Boolean.TRUE.equals(result.isTruncated()));
+            return policyArns;
+        } catch (NoSuchEntityException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Resolves every name on the executor of this helper, so the parallelism and the request rate are
+     * bounded across all concurrent bulk calls, not per call.
+     */
+    private <T> Map<String, T> resolveAll(final Collection<String> names,
+                                          final BiFunction<String, TokenBucket, T> lookup) {
+        final Set<String> uniqueNames = new LinkedHashSet<>(names);
+        final Map<String, T> results = new LinkedHashMap<>();
+        if (snapshot != null || uniqueNames.isEmpty()) {
+            // answered from memory, nothing to fan out
+            for (String name : uniqueNames) {
+                results.put(name, lookup.apply(name, null));
+            }
+            return results;
+        }
+        final TokenBucket limiter = bulkLimiter;
+        final Map<String, Future<T>> futures = new LinkedHashMap<>();
+        try {
+            for (String name : uniqueNames) {
+                futures.put(name, bulkExecutor.submit(() -> lookup.apply(name, limiter)));
+            }
+            for (Map.Entry<String, Future<T>> future : futures.entrySet()) {
+                results.put(future.getKey(), future.getValue().get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Bulk lookup was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            // the executor is shared, so only the lookups of this call are cancelled
+            for (Future<T> future : futures.values()) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Runs an IAM request of this helper. With a limiter, as inside a bulk lookup, every request,
+     * including each page of a paginated listing, first takes a token from it.
+     */
+    private <Q, R> R call(final Operation operation, final BiFunction<AmazonIdentityManagement, Q, R> api,
+                          final Q request, final TokenBucket limiter) {
+        if (limiter != null) {
+            try {
+                limiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Bulk lookup was interrupted", e);
+            }
+        }
+        return timed(operation, amazonIdentityManagement, api, request);
+    }
+
+    /**
+     * Runs an IAM request, recording it as 'operation'. A missing entity is an answer, not a failure.
+     * The api is an unbound method reference so nothing is allocated when metrics are disabled.
+     */
+    static <Q, R> R timed(final Operation operation, final AmazonIdentityManagement amazonIdentityManagement,
+                          final BiFunction<AmazonIdentityManagement, Q, R> api, final Q request) {
+        if (!AwsMetrics.isEnabled()) {
+            return api.apply(amazonIdentityManagement, request);
+        }
+        final long start = AwsMetrics.start();
+        boolean success = false;
+        try {
+            final R result = api.apply(amazonIdentityManagement, request);
+            success = true;
+            return result;
+        } catch (NoSuchEntityException e) {
+            success = true;
+            throw e;
+        } finally {
+            AwsMetrics.record(operation, start, 0L, success);
+        }
+    }
+
+    private static Map<String, Boolean> present(final Map<String, Optional<String>> arns) {
+        final Map<String, Boolean> presence = new LinkedHashMap<>();
+        for (Map.Entry<String, Optional<String>> arn : arns.entrySet()) {
+            presence.put(arn.getKey(), arn.getValue().isPresent());
+        }
+        return presence;
+    }
+}
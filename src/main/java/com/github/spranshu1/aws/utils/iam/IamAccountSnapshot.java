@@ -0,0 +1,362 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.iam;
+
+import com.amazonaws.services.identitymanagement.AmazonIdentityManagement;
+import com.amazonaws.services.identitymanagement.model.*;
+import com.github.spranshu1.aws.utils.metrics.Operation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-memory copy of the roles, instance profiles and managed policies of an account, taken with
+ * paginated GetAccountAuthorizationDetails calls and queried offline afterwards.
+ * <p>
+ * GetAccountAuthorizationDetails only returns instance profiles that contain a role, so the capture also
+ * pages through ListInstanceProfiles, and managed policy names come from ListPolicies over every scope so
+ * that AWS managed policies nothing is attached to are known as well.
+ * <p>
+ * Inline role policies are captured by name only, without their documents, and users and groups are
+ * not captured at all.
+ */
+public final class IamAccountSnapshot {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final long capturedAt;
+    private final Map<String, RoleEntry> roles;
+    private final Map<String, InstanceProfileEntry> instanceProfiles;
+    private final Map<String, String> policyArnsByName;
+    private final Map<String, List<String>> roleNamesByPolicyArn;
+
+    private IamAccountSnapshot(final long capturedAt, final Map<String, RoleEntry> roles,
+                               final Map<String, InstanceProfileEntry> instanceProfiles,
+                               final Map<String, String> policyArnsByName) {
+        this.capturedAt = capturedAt;
+        this.roles = roles;
+        this.instanceProfiles = instanceProfiles;
+        this.policyArnsByName = policyArnsByName;
+        this.roleNamesByPolicyArn = new HashMap<>();
+        for (RoleEntry role : roles.values()) {
+            for (String policyArn : role.attachedPolicyArns) {
+                roleNamesByPolicyArn.computeIfAbsent(policyArn, k -> new ArrayList<>()).add(role.name);
+            }
+        }
+    }
+
+    /**
+     * Captures the snapshot of the account.
+     *
+     * @param amazonIdentityManagement the amazon identity management
+     * @return the snapshot
+     */
+    public static IamAccountSnapshot capture(final AmazonIdentityManagement amazonIdentityManagement) {
+        final long capturedAt = System.currentTimeMillis();
+        final Map<String, RoleEntry> roles = new LinkedHashMap<>();
+        final Map<String, InstanceProfileEntry> instanceProfiles = new LinkedHashMap<>();
+        final Map<String, String> policyArnsByName = new LinkedHashMap<>();
+        String marker = null;
+        GetAccountAuthorizationDetailsResult result;
+        do {
+            final GetAccountAuthorizationDetailsRequest request = new GetAccountAuthorizationDetailsRequest()
+                    .withFilter(EntityType.Role)
+                    .withMaxItems(PolicyIndex.MAX_ITEMS)
+                    .withMarker(marker);
+            result = IAMHelper.timed(Operation.IAM_GET_ACCOUNT_AUTHORIZATION_DETAILS, amazonIdentityManagement,
+                    AmazonIdentityManagement::getAccountAuthorizationDetails, request);
+            for (RoleDetail role : result.getRoleDetailList()) {
+                roles.put(role.getRoleName(), new RoleEntry(role.getRoleName(), role.getArn(),
+                        role.getAttachedManagedPolicies().stream().map(AttachedPolicy::getPolicyArn).toArray(String[]::new),
+                        role.getRolePolicyList().stream().map(PolicyDetail::getPolicyName).toArray(String[]::new),
+                        role.getInstanceProfileList().stream().map(InstanceProfile::getInstanceProfileName).toArray(String[]::new)));
+                for (InstanceProfile profile : role.getInstanceProfileList()) {
+                    instanceProfiles.put(profile.getInstanceProfileName(), new InstanceProfileEntry(
+                            profile.getInstanceProfileName(), profile.getArn(),
+                            profile.getRoles().stream().map(Role::getRoleName).toArray(String[]::new)));
+                }
+            }
+            marker = result.getMarker();
+        } while (Boolean.TRUE.equals(result.getIsTruncated()));
+        // instance profiles without a role are only visible here
+        marker = null;
+        ListInstanceProfilesResult profiles;
+        do {
+            final ListInstanceProfilesRequest request = new ListInstanceProfilesRequest()
+                    .withMaxItems(PolicyIndex.MAX_ITEMS)
+                    .withMarker(marker);
+            profiles = IAMHelper.timed(Operation.IAM_LIST_INSTANCE_PROFILES, amazonIdentityManagement,
+                    AmazonIdentityManagement::listInstanceProfiles, request);
+            for (InstanceProfile profile : profiles.getInstanceProfiles()) {
+                instanceProfiles.putIfAbsent(profile.getInstanceProfileName(), new InstanceProfileEntry(
+                        profile.getInstanceProfileName(), profile.getArn(),
+                        profile.getRoles().stream().map(Role::getRoleName).toArray(String[]::new)));
+            }
+            marker = profiles.getMarker();
+        } while (Boolean.TRUE.equals(profiles.isTruncated()));
+        // unlike GetAccountAuthorizationDetails, ListPolicies also returns unattached AWS managed policies
+        marker = null;
+        ListPoliciesResult policies;
+        do {
+            final ListPoliciesRequest request = new ListPoliciesRequest()
+                    .withScope(PolicyScopeType.All)
+                    .withMaxItems(PolicyIndex.MAX_ITEMS)
+                    .withMarker(marker);
+            policies = IAMHelper.timed(Operation.IAM_LIST_POLICIES, amazonIdentityManagement,
+                    AmazonIdentityManagement::listPolicies, request);
+            for (Policy policy : policies.getPolicies()) {
+                policyArnsByName.putIfAbsent(policy.getPolicyName(), policy.getArn());
+            }
+            marker = policies.getMarker();
+        } while (Boolean.TRUE.equals(policies.isTruncated()));
+        return new IamAccountSnapshot(capturedAt, roles, instanceProfiles, policyArnsByName);
+    }
+
+    /**
+     * Loads a snapshot written by {@link #save(File)}.
+     *
+     * @param file the file
+     * @return the snapshot
+     * @throws IOException the io exception
+     */
+    public static IamAccountSnapshot load(final File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file))))) {
+            final int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot format version " + version);
+            }
+            final long capturedAt = in.readLong();
+            final Map<String, RoleEntry> roles = new LinkedHashMap<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                RoleEntry role = new RoleEntry(in.readUTF(), in.readUTF(),
+                        readArray(in), readArray(in), readArray(in));
+                roles.put(role.name, role);
+            }
+            final Map<String, InstanceProfileEntry> instanceProfiles = new LinkedHashMap<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                InstanceProfileEntry profile = new InstanceProfileEntry(in.readUTF(), in.readUTF(), readArray(in));
+                instanceProfiles.put(profile.name, profile);
+            }
+            final Map<String, String> policyArnsByName = new LinkedHashMap<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                policyArnsByName.put(in.readUTF(), in.readUTF());
+            }
+            return new IamAccountSnapshot(capturedAt, roles, instanceProfiles, policyArnsByName);
+        }
+    }
+
+    /**
+     * Writes the snapshot to a gzip compressed file.
+     *
+     * @param file the file
+     * @throws IOException the io exception
+     */
+    public void save(final File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(file))))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(capturedAt);
+            out.writeInt(roles.size());
+            for (RoleEntry role : roles.values()) {
+                out.writeUTF(role.name);
+                out.writeUTF(role.arn);
+                writeArray(out, role.attachedPolicyArns);
+                writeArray(out, role.inlinePolicyNames);
+                writeArray(out, role.instanceProfileNames);
+            }
+            out.writeInt(instanceProfiles.size());
+            for (InstanceProfileEntry profile : instanceProfiles.values()) {
+                out.writeUTF(profile.name);
+                out.writeUTF(profile.arn);
+                writeArray(out, profile.roleNames);
+            }
+            out.writeInt(policyArnsByName.size());
+            for (Map.Entry<String, String> policy : policyArnsByName.entrySet()) {
+                out.writeUTF(policy.getKey());
+                out.writeUTF(policy.getValue());
+            }
+        }
+    }
+
+    /**
+     * Time the snapshot was taken, in epoch millis.
+     *
+     * @return the captured at
+     */
+    public long getCapturedAt() {
+        return capturedAt;
+    }
+
+    /**
+     * Names of all roles in the snapshot.
+     *
+     * @return the role names
+     */
+    public Set<String> getRoleNames() {
+        return Collections.unmodifiableSet(roles.keySet());
+    }
+
+    /**
+     * Gets role arn.
+     *
+     * @param roleName the role name
+     * @return the role arn
+     */
+    public Optional<String> getRoleArn(final String roleName) {
+        RoleEntry role = roles.get(roleName);
+        return role == null ? Optional.empty() : Optional.of(role.arn);
+    }
+
+    /**
+     * Gets attached policies arns for role.
+     *
+     * @param roleName the role name
+     * @return the attached policies arns for role, empty if the role does not exist
+     */
+    public List<String> getAttachedPoliciesArnsForRole(final String roleName) {
+        RoleEntry role = roles.get(roleName);
+        return role == null ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(role.attachedPolicyArns));
+    }
+
+    /**
+     * Gets inline policy names for role.
+     *
+     * @param roleName the role name
+     * @return the inline policy names for role, empty if the role does not exist
+     */
+    public List<String> getInlinePolicyNamesForRole(final String roleName) {
+        RoleEntry role = roles.get(roleName);
+        return role == null ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(role.inlinePolicyNames));
+    }
+
+    /**
+     * Gets instance profile names for role.
+     *
+     * @param roleName the role name
+     * @return the instance profile names for role, empty if the role does not exist
+     */
+    public List<String> getInstanceProfileNamesForRole(final String roleName) {
+        RoleEntry role = roles.get(roleName);
+        return role == null ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(role.instanceProfileNames));
+    }
+
+    /**
+     * Gets instance profile arn.
+     *
+     * @param instanceProfileName the instance profile name
+     * @return the instance profile arn
+     */
+    public Optional<String> getInstanceProfileArn(final String instanceProfileName) {
+        InstanceProfileEntry profile = instanceProfiles.get(instanceProfileName);
+        return profile == null ? Optional.empty() : Optional.of(profile.arn);
+    }
+
+    /**
+     * Gets instance profile roles.
+     *
+     * @param instanceProfileName the instance profile name
+     * @return the instance profile roles, empty if the instance profile does not exist
+     */
+    public List<String> getInstanceProfileRoles(final String instanceProfileName) {
+        InstanceProfileEntry profile = instanceProfiles.get(instanceProfileName);
+        return profile == null ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(profile.roleNames));
+    }
+
+    /**
+     * Gets managed policy arn.
+     *
+     * @param policyName the policy name
+     * @return the policy arn
+     */
+    public Optional<String> getPolicyArn(final String policyName) {
+        return Optional.ofNullable(policyArnsByName.get(policyName));
+    }
+
+    /**
+     * Gets the roles a managed policy is attached to.
+     *
+     * @param policyArn the policy arn
+     * @return the role names
+     */
+    public List<String> getRolesForPolicy(final String policyArn) {
+        List<String> roleNames = roleNamesByPolicyArn.get(policyArn);
+        return roleNames == null ? Collections.emptyList() : Collections.unmodifiableList(roleNames);
+    }
+
+    private static void writeArray(final DataOutputStream out, final String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String[] readArray(final DataInputStream in) throws IOException {
+        final String[] values = new String[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readUTF();
+        }
+        return values;
+    }
+
+    private static final class RoleEntry {
+        private final String name;
+        private final String arn;
+        private final String[] attachedPolicyArns;
+        private final String[] inlinePolicyNames;
+        private final String[] instanceProfileNames;
+
+        private RoleEntry(final String name, final String arn, final String[] attachedPolicyArns,
+                          final String[] inlinePolicyNames, final String[] instanceProfileNames) {
+            this.name = name;
+            this.arn = arn;
+            this.attachedPolicyArns = attachedPolicyArns;
+            this.inlinePolicyNames = inlinePolicyNames;
+            this.instanceProfileNames = instanceProfileNames;
+        }
+    }
+
+    private static final class InstanceProfileEntry {
+        private final String name;
+        private final String arn;
+        private final String[] roleNames;
+
+        private InstanceProfileEntry(final String name, final String arn, final String[] roleNames) {
+            this.name = name;
+            this.arn = arn;
+            this.roleNames = roleNames;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.iam;
+
+import com.amazonaws.services.identitymanagement.AmazonIdentityManagement;
+import com.amazonaws.services.identitymanagement.model.ListPoliciesRequest;
+import com.amazonaws.services.identitymanagement.model.ListPoliciesResult;
+import com.amazonaws.services.identitymanagement.model.Policy;
+import com.amazonaws.services.identitymanagement.model.PolicyScopeType;
+import com.github.spranshu1.aws.utils.metrics.Operation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Name to ARN index of the managed policies of an account.
+ * <p>
+ * The index is listed once (filtered by scope and path prefix) and answered from memory afterwards.
+ * A lookup older than the staleness bound rebuilds it first; concurrent rebuilds are collapsed into
+ * one listing. IAM has no "changed since" listing, so a refresh re-lists the filtered policies and
+ * swaps the new index in atomically while readers keep using the old one.
+ */
+public class PolicyIndex implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PolicyIndex.class);
+
+    /** Largest page size accepted by ListPolicies. */
+    static final int MAX_ITEMS = 1000;
+
+    private final AmazonIdentityManagement amazonIdentityManagement;
+    private final PolicyScopeType scope;
+    private final String pathPrefix;
+    private final long maxStalenessMillis;
+    private final AtomicReference<CompletableFuture<Snapshot>> inFlight = new AtomicReference<>();
+    private volatile Snapshot snapshot;
+    private volatile boolean backgroundRefresh;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Instantiates a new index over all managed policies.
+     *
+     * @param amazonIdentityManagement the amazon identity management
+     * @param maxStaleness             the max age of the index before a lookup rebuilds it
+     * @param unit                     the unit of max staleness
+     */
+    public PolicyIndex(final AmazonIdentityManagement amazonIdentityManagement, final long maxStaleness,
+                       final TimeUnit unit) {
+        this(amazonIdentityManagement, PolicyScopeType.All, null, maxStaleness, unit);
+    }
+
+    /**
+     * Instantiates a new index.
+     *
+     * @param amazonIdentityManagement the amazon identity management
+     * @param scope                    the policy scope (All, AWS or Local)
+     * @param pathPrefix               the path prefix, null for all paths
+     * @param maxStaleness             the max age of the index before a lookup rebuilds it
+     * @param unit                     the unit of max staleness
+     */
+    public PolicyIndex(final AmazonIdentityManagement amazonIdentityManagement, final PolicyScopeType scope,
+                       final String pathPrefix, final long maxStaleness, final TimeUnit unit) {
+        this.amazonIdentityManagement = amazonIdentityManagement;
+        this.scope = scope;
+        this.pathPrefix = pathPrefix;
+        this.maxStalenessMillis = unit.toMillis(maxStaleness);
+    }
+
+    /**
+     * Refreshes the index in the background every 'period'. Failed refreshes are logged and the
+     * previous index is kept; lookups answer from it instead of rebuilding it until it is twice the
+     * staleness bound old, then rebuild it themselves.
+     *
+     * @param period the period
+     * @param unit   the unit
+     */
+    public synchronized void startBackgroundRefresh(final long period, final TimeUnit unit) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "iam-policy-index-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (Exception e) {
+                LOGGER.error("Policy index could not be refreshed due to exception {}", e.getMessage());
+            }
+        }, 0, period, unit);
+        backgroundRefresh = true;
+    }
+
+    /**
+     * Gets policy arn.
+     *
+     * @param policyName the policy name
+     * @return the policy arn
+     */
+    public Optional<String> getPolicyArn(final String policyName) {
+        return Optional.ofNullable(current().arnsByName.get(policyName));
+    }
+
+    /**
+     * Has policy.
+     *
+     * @param policyName the policy name
+     * @return the boolean
+     */
+    public boolean hasPolicy(final String policyName) {
+        return current().arnsByName.containsKey(policyName);
+    }
+
+    /**
+     * Number of indexed policies.
+     *
+     * @return the size
+     */
+    public int size() {
+        return current().arnsByName.size();
+    }
+
+    /**
+     * Rebuilds the index now. If a rebuild is already running, waits for it instead of starting another.
+     */
+    public void refresh() {
+        rebuild(null);
+    }
+
+    /**
+     * Stops the background refresh.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            backgroundRefresh = false;
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private Snapshot current() {
+        final Snapshot current = snapshot;
+        if (current != null) {
+            final long age = age(current);
+            // a stale index is kept while the background refresh replaces it, within a hard bound
+            if (age <= maxStalenessMillis || (backgroundRefresh && age <= 2 * maxStalenessMillis)) {
+                return current;
+            }
+        }
+        return rebuild(current);
+    }
+
+    private boolean isStale(final Snapshot current) {
+        return age(current) > maxStalenessMillis;
+    }
+
+    private static long age(final Snapshot current) {
+        return System.currentTimeMillis() - current.builtAt;
+    }
+
+    /**
+     * Rebuilds the index, or joins the rebuild in progress. With 'seen' set, a rebuild is skipped when
+     * another one replaced 'seen' in the meantime.
+     */
+    private Snapshot rebuild(final Snapshot seen) {
+        while (true) {
+            CompletableFuture<Snapshot> running = inFlight.get();
+            if (running != null) {
+                return await(running);
+            }
+            final Snapshot latest = snapshot;
+            if (seen != null && latest != null && latest != seen && !isStale(latest)) {
+                return latest;
+            }
+            CompletableFuture<Snapshot> mine = new CompletableFuture<>();
+            if (!inFlight.compareAndSet(null, mine)) {
+                continue;
+            }
+            try {
+                Snapshot loaded = load();
+                snapshot = loaded;
+                mine.complete(loaded);
+                return loaded;
+            } catch (Throwable t) {
+                // waiting threads must be released whatever the loader threw
+                mine.completeExceptionally(t);
+                throw t;
+            } finally {
+                inFlight.set(null);
+            }
+        }
+    }
+
+    private Snapshot await(final CompletableFuture<Snapshot> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private Snapshot load() {
+        final long startedAt = System.currentTimeMillis();
+        final Map<String, String> arnsByName = new HashMap<>();
+        String marker = null;
+        ListPoliciesResult result;
+        do {
+            final ListPoliciesRequest request = new ListPoliciesRequest()
+                    .withScope(scope)
+                    .withPathPrefix(pathPrefix)
+                    .withMaxItems(MAX_ITEMS)
+                    .withMarker(marker);
+            result = IAMHelper.timed(Operation.IAM_LIST_POLICIES, amazonIdentityManagement,
+                    AmazonIdentityManagement::listPolicies, request);
+            for (Policy policy : result.getPolicies()) {
+                // keep the first match, as a paged search would
+                arnsByName.putIfAbsent(policy.getPolicyName(), policy.getArn());
+            }
+            marker = result.getMarker();
+        } while (Boolean.TRUE.equals(result.isTruncated()));
+        LOGGER.debug("Indexed {} policies in {} ms", arnsByName.size(), System.currentTimeMillis() - startedAt);
+        return new Snapshot(Collections.unmodifiableMap(arnsByName), startedAt);
+    }
+
+    private static final class Snapshot {
+        private final Map<String, String> arnsByName;
+        private final long builtAt;
+
+        private Snapshot(final Map<String, String> arnsByName, final long builtAt) {
+            this.arnsByName = arnsByName;
+            this.builtAt = builtAt;
+        }
+    }
+}
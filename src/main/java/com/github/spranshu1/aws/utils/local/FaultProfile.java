@@ -0,0 +1,186 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.local;
+
+import com.amazonaws.AmazonServiceException;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Latency, error, throttling and partial batch failure injection of the local stand-ins.
+ * Each calling thread draws from its own random source, seeded from the profile seed and the thread name,
+ * so threads do not contend on it and the faults a thread sees do not depend on how threads interleave.
+ */
+public final class FaultProfile {
+
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final double throttleRate;
+    private final double batchEntryFailureRate;
+    private final long seed;
+    private final ThreadLocal<SplittableRandom> random = ThreadLocal.withInitial(this::newRandom);
+
+    private FaultProfile(final Builder builder) {
+        this.latency = builder.latency;
+        this.errorRate = builder.errorRate;
+        this.throttleRate = builder.throttleRate;
+        this.batchEntryFailureRate = builder.batchEntryFailureRate;
+        this.seed = builder.seed;
+    }
+
+    /**
+     * No latency and no failures.
+     *
+     * @return the fault profile
+     */
+    public static FaultProfile none() {
+        return builder().build();
+    }
+
+    /**
+     * New builder without any faults.
+     *
+     * @return the builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Applies latency, then possibly fails the call as throttled or with an internal error.
+     *
+     * @param serviceName        the service name
+     * @param throttleErrorCode  the error code the service uses for throttling
+     * @param throttleStatusCode the status code the service uses for throttling
+     */
+    void beforeCall(final String serviceName, final String throttleErrorCode, final int throttleStatusCode) {
+        final SplittableRandom random = this.random.get();
+        final long nanos = latency.sampleNanos(random);
+        if (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+        }
+        if (throttleRate > 0 && random.nextDouble() < throttleRate) {
+            throw serviceException(serviceName, "Request was throttled", throttleErrorCode, throttleStatusCode);
+        }
+        if (errorRate > 0 && random.nextDouble() < errorRate) {
+            throw serviceException(serviceName, "We encountered an internal error. Please try again.", "InternalError", 500);
+        }
+    }
+
+    /**
+     * Whether one entry of a batch request fails while the others succeed.
+     *
+     * @return the boolean
+     */
+    boolean failBatchEntry() {
+        return batchEntryFailureRate > 0 && random.get().nextDouble() < batchEntryFailureRate;
+    }
+
+    private SplittableRandom newRandom() {
+        return new SplittableRandom(seed * 31 + Thread.currentThread().getName().hashCode());
+    }
+
+    static AmazonServiceException serviceException(final String serviceName, final String message,
+                                                   final String errorCode, final int statusCode) {
+        final AmazonServiceException e = new AmazonServiceException(message);
+        e.setServiceName(serviceName);
+        e.setErrorCode(errorCode);
+        e.setStatusCode(statusCode);
+        e.setErrorType(statusCode >= 500 ? AmazonServiceException.ErrorType.Service : AmazonServiceException.ErrorType.Client);
+        return e;
+    }
+
+    /**
+     * Builder for {@link FaultProfile}.
+     */
+    public static final class Builder {
+        private LatencyDistribution latency = LatencyDistribution.none();
+        private double errorRate;
+        private double throttleRate;
+        private double batchEntryFailureRate;
+        private long seed = 42L;
+
+        private Builder() {
+        }
+
+        /**
+         * Latency added to every call.
+         *
+         * @param latency the latency
+         * @return the builder
+         */
+        public Builder latency(final LatencyDistribution latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * Share of calls failing with a 500 InternalError.
+         *
+         * @param errorRate the error rate between 0 and 1
+         * @return the builder
+         */
+        public Builder errorRate(final double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        /**
+         * Share of calls rejected as throttled (SlowDown for S3, RequestThrottled for SQS).
+         *
+         * @param throttleRate the throttle rate between 0 and 1
+         * @return the builder
+         */
+        public Builder throttleRate(final double throttleRate) {
+            this.throttleRate = throttleRate;
+            return this;
+        }
+
+        /**
+         * Share of batch entries reported as failed in an otherwise successful batch call.
+         *
+         * @param batchEntryFailureRate the batch entry failure rate between 0 and 1
+         * @return the builder
+         */
+        public Builder batchEntryFailureRate(final double batchEntryFailureRate) {
+            this.batchEntryFailureRate = batchEntryFailureRate;
+            return this;
+        }
+
+        /**
+         * Seed of the per thread random sources.
+         *
+         * @param seed the seed
+         * @return the builder
+         */
+        public Builder seed(final long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Build fault profile.
+         *
+         * @return the fault profile
+         */
+        public FaultProfile build() {
+            return new FaultProfile(this);
+        }
+    }
+}
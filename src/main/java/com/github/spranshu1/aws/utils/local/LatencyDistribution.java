@@ -0,0 +1,89 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.local;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distribution of the latency a local stand-in adds to each call.
+ */
+public interface LatencyDistribution {
+
+    /**
+     * Samples one latency.
+     *
+     * @param random the random source
+     * @return the latency in nanoseconds
+     */
+    long sampleNanos(SplittableRandom random);
+
+    /**
+     * No added latency.
+     *
+     * @return the distribution
+     */
+    static LatencyDistribution none() {
+        return random -> 0L;
+    }
+
+    /**
+     * The same latency for every call.
+     *
+     * @param latency the latency
+     * @param unit    the unit
+     * @return the distribution
+     */
+    static LatencyDistribution fixed(final long latency, final TimeUnit unit) {
+        final long nanos = unit.toNanos(latency);
+        return random -> nanos;
+    }
+
+    /**
+     * Latency uniformly distributed between 'min' and 'max'.
+     *
+     * @param min  the min
+     * @param max  the max
+     * @param unit the unit
+     * @return the distribution
+     */
+    static LatencyDistribution uniform(final long min, final long max, final TimeUnit unit) {
+        final long minNanos = unit.toNanos(min);
+        final long spread = unit.toNanos(max) - minNanos;
+        return random -> minNanos + (long) (random.nextDouble() * spread);
+    }
+
+    /**
+     * Log-normal latency, the usual shape of network round trips: most calls close to 'median',
+     * with a long tail controlled by 'sigma' (0.5 gives a p99 of about 3.2 times the median).
+     *
+     * @param median the median
+     * @param sigma  the standard deviation of the underlying normal distribution
+     * @param unit   the unit
+     * @return the distribution
+     */
+    static LatencyDistribution logNormal(final long median, final double sigma, final TimeUnit unit) {
+        final double medianNanos = unit.toNanos(median);
+        return random -> {
+            // Box-Muller, SplittableRandom has no nextGaussian
+            final double gaussian = Math.sqrt(-2 * Math.log(1 - random.nextDouble()))
+                    * Math.cos(2 * Math.PI * random.nextDouble());
+            return (long) (medianNanos * Math.exp(sigma * gaussian));
+        };
+    }
+}
@@ -0,0 +1,843 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.local;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.event.ProgressEventType;
+import com.amazonaws.event.ProgressListener;
+import com.amazonaws.event.SDKProgressPublisher;
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.*;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.IOUtils;
+import com.amazonaws.util.Md5Utils;
+import com.github.spranshu1.aws.utils.local.LocalS3Bucket.MultipartUpload;
+import com.github.spranshu1.aws.utils.local.LocalS3Bucket.Page;
+import com.github.spranshu1.aws.utils.local.LocalS3Bucket.Part;
+import com.github.spranshu1.aws.utils.local.LocalS3Bucket.StoredVersion;
+import org.apache.http.client.methods.HttpGet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process AmazonS3 for load and concurrency tests of code built on
+ * {@link com.github.spranshu1.aws.utils.s3.S3BucketHelper}, {@link com.github.spranshu1.aws.utils.s3.S3Service}
+ * and TransferManager.
+ * <p>
+ * Models buckets, ranged, part-number and ETag-conditional GETs, V1 and V2 listing pagination with
+ * delimiters, versioning with delete markers, and multipart uploads with the 5 MB minimum part size. Latency, throttling
+ * (503 SlowDown), errors and partial DeleteObjects failures are injected through the {@link FaultProfile}.
+ * ACLs, encryption, lifecycle and copy are not modelled.
+ */
+public class LocalAmazonS3 extends AbstractAmazonS3 {
+
+    static final String SERVICE_NAME = "Amazon S3";
+
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    private static final int MAX_KEYS = 1000;
+    private static final Owner OWNER = new Owner("000000000000", "local");
+
+    private final ConcurrentMap<String, LocalS3Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile FaultProfile faultProfile;
+
+    /**
+     * Instantiates a new local S3 without faults.
+     */
+    public LocalAmazonS3() {
+        this(FaultProfile.none());
+    }
+
+    /**
+     * Instantiates a new local S3.
+     *
+     * @param faultProfile the fault profile
+     */
+    public LocalAmazonS3(final FaultProfile faultProfile) {
+        this.faultProfile = faultProfile;
+    }
+
+    /**
+     * Replaces the fault profile applied to subsequent calls.
+     *
+     * @param faultProfile the fault profile
+     */
+    public void setFaultProfile(final FaultProfile faultProfile) {
+        this.faultProfile = faultProfile;
+    }
+
+    // buckets
+
+    @Override
+    public Bucket createBucket(String bucketName) {
+        return createBucket(new CreateBucketRequest(bucketName));
+    }
+
+    @Override
+    public Bucket createBucket(CreateBucketRequest request) {
+        beforeCall();
+        final LocalS3Bucket created = new LocalS3Bucket(request.getBucketName(), sequence);
+        if (buckets.putIfAbsent(request.getBucketName(), created) != null) {
+            throw error("Your previous request to create the named bucket succeeded and you already own it.",
+                    "BucketAlreadyOwnedByYou", 409);
+        }
+        return toBucket(created);
+    }
+
+    @Override
+    public List<Bucket> listBuckets() {
+        return listBuckets(new ListBucketsRequest());
+    }
+
+    @Override
+    public List<Bucket> listBuckets(ListBucketsRequest request) {
+        beforeCall();
+        final List<Bucket> result = new ArrayList<>();
+        for (LocalS3Bucket bucket : buckets.values()) {
+            result.add(toBucket(bucket));
+        }
+        return result;
+    }
+
+    @Override
+    public void deleteBucket(String bucketName) {
+        deleteBucket(new DeleteBucketRequest(bucketName));
+    }
+
+    @Override
+    public void deleteBucket(DeleteBucketRequest request) {
+        beforeCall();
+        final LocalS3Bucket bucket = bucket(request.getBucketName());
+        if (!bucket.isEmpty()) {
+            throw error("The bucket you tried to delete is not empty", "BucketNotEmpty", 409);
+        }
+        buckets.remove(request.getBucketName(), bucket);
+    }
+
+    @Override
+    public HeadBucketResult headBucket(HeadBucketRequest request) {
+        beforeCall();
+        bucket(request.getBucketName());
+        return new HeadBucketResult().withBucketRegion("local");
+    }
+
+    @Override
+    public boolean doesBucketExistV2(String bucketName) {
+        beforeCall();
+        return buckets.containsKey(bucketName);
+    }
+
+    @Override
+    public BucketVersioningConfiguration getBucketVersioningConfiguration(String bucketName) {
+        return getBucketVersioningConfiguration(new GetBucketVersioningConfigurationRequest(bucketName));
+    }
+
+    @Override
+    public BucketVersioningConfiguration getBucketVersioningConfiguration(GetBucketVersioningConfigurationRequest request) {
+        beforeCall();
+        return new BucketVersioningConfiguration(bucket(request.getBucketName()).getVersioningStatus());
+    }
+
+    @Override
+    public void setBucketVersioningConfiguration(SetBucketVersioningConfigurationRequest request) {
+        beforeCall();
+        final LocalS3Bucket bucket = bucket(request.getBucketName());
+        final String status = request.getVersioningConfiguration().getStatus();
+        if (BucketVersioningConfiguration.OFF.equals(status)
+                && !BucketVersioningConfiguration.OFF.equals(bucket.getVersioningStatus())) {
+            throw error("Versioning cannot be turned off once enabled, only suspended.",
+                    "IllegalVersioningConfigurationException", 400);
+        }
+        bucket.setVersioningStatus(status);
+    }
+
+    // objects
+
+    @Override
+    public PutObjectResult putObject(String bucketName, String key, File file) {
+        return putObject(new PutObjectRequest(bucketName, key, file));
+    }
+
+    @Override
+    public PutObjectResult putObject(String bucketName, String key, InputStream input, ObjectMetadata metadata) {
+        return putObject(new PutObjectRequest(bucketName, key, input, metadata));
+    }
+
+    @Override
+    public PutObjectResult putObject(String bucketName, String key, String content) {
+        final byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        final ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(data.length);
+        return putObject(new PutObjectRequest(bucketName, key, new ByteArrayInputStream(data), metadata));
+    }
+
+    @Override
+    public PutObjectResult putObject(PutObjectRequest request) {
+        // publish the transfer events AmazonS3Client does, TransferManager reports single part uploads from them
+        final ProgressListener listener = request.getGeneralProgressListener();
+        SDKProgressPublisher.publishProgress(listener, ProgressEventType.TRANSFER_STARTED_EVENT);
+        try {
+            final PutObjectResult result = doPutObject(request);
+            SDKProgressPublisher.publishProgress(listener, ProgressEventType.TRANSFER_COMPLETED_EVENT);
+            return result;
+        } catch (RuntimeException e) {
+            SDKProgressPublisher.publishProgress(listener, ProgressEventType.TRANSFER_FAILED_EVENT);
+            throw e;
+        }
+    }
+
+    private PutObjectResult doPutObject(final PutObjectRequest request) {
+        beforeCall();
+        final LocalS3Bucket bucket = bucket(request.getBucketName());
+        final byte[] data;
+        if (request.getFile() != null) {
+            data = read(request.getFile(), 0, request.getFile().length());
+        } else {
+            try (InputStream in = request.getInputStream()) {
+                data = read(in, -1L);
+            } catch (IOException e) {
+                throw new SdkClientException("Unable to read object content", e);
+            }
+        }
+        final StoredVersion version = bucket.put(request.getKey(), data, request.getMetadata(),
+                BinaryUtils.toHex(Md5Utils.computeMD5Hash(data)), null);
+        final PutObjectResult result = new PutObjectResult();
+        result.setETag(version.eTag);
+        result.setVersionId(exposedVersionId(version));
+        result.setContentMd5(Md5Utils.md5AsBase64(data));
+        result.setMetadata(metadata(version, data.length));
+        return result;
+    }
+
+    @Override
+    public S3Object getObject(String bucketName, String key) {
+        return getObject(new GetObjectRequest(bucketName, key));
+    }
+
+    @Override
+    public S3Object getObject(GetObjectRequest request) {
+        beforeCall();
+        final StoredVersion version = find(request.getBucketName(), request.getKey(), request.getVersionId());
+        if (!request.getMatchingETagConstraints().isEmpty()
+                && !request.getMatchingETagConstraints().contains(version.eTag)
+                || request.getNonmatchingETagConstraints().contains(version.eTag)) {
+            // the SDK answers a failed constraint with null
+            return null;
+        }
+        final long[] range = range(version, request.getRange(), request.getPartNumber());
+        final int length = (int) (range[1] - range[0] + 1);
+        final ObjectMetadata metadata = metadata(version, length);
+        if (request.getRange() != null || request.getPartNumber() != null) {
+            metadata.setHeader(Headers.CONTENT_RANGE,
+                    "bytes " + range[0] + "-" + range[1] + "/" + version.data.length);
+        }
+        if (request.getPartNumber() != null && version.partSizes != null) {
+            metadata.setHeader(Headers.S3_PARTS_COUNT, version.partSizes.length);
+        }
+        final S3Object object = new S3Object();
+        object.setBucketName(request.getBucketName());
+        object.setKey(request.getKey());
+        object.setObjectMetadata(metadata);
+        object.setObjectContent(new S3ObjectInputStream(
+                new ByteArrayInputStream(version.data, (int) range[0], length), new HttpGet()));
+        return object;
+    }
+
+    @Override
+    public ObjectMetadata getObject(GetObjectRequest request, File destinationFile) {
+        final S3Object object = getObject(request);
+        if (object == null) {
+            return null;
+        }
+        try (InputStream in = object.getObjectContent(); OutputStream out = new FileOutputStream(destinationFile)) {
+            IOUtils.copy(in, out);
+        } catch (IOException e) {
+            throw new SdkClientException("Unable to store object contents to disk: " + e.getMessage(), e);
+        }
+        return object.getObjectMetadata();
+    }
+
+    @Override
+    public String getObjectAsString(String bucketName, String key) {
+        final S3Object object = getObject(bucketName, key);
+        return new String(read(object.getObjectContent(), -1), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(String bucketName, String key) {
+        return getObjectMetadata(new GetObjectMetadataRequest(bucketName, key));
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(GetObjectMetadataRequest request) {
+        beforeCall();
+        final StoredVersion version = find(request.getBucketName(), request.getKey(), request.getVersionId());
+        if (request.getPartNumber() == null) {
+            return metadata(version, version.data.length);
+        }
+        final long[] range = range(version, null, request.getPartNumber());
+        final ObjectMetadata metadata = metadata(version, range[1] - range[0] + 1);
+        if (version.partSizes != null) {
+            metadata.setHeader(Headers.S3_PARTS_COUNT, version.partSizes.length);
+        }
+        return metadata;
+    }
+
+    @Override
+    public boolean doesObjectExist(String bucketName, String objectName) {
+        try {
+            getObjectMetadata(bucketName, objectName);
+            return true;
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == 404) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void deleteObject(String bucketName, String key) {
+        deleteObject(new DeleteObjectRequest(bucketName, key));
+    }
+
+    @Override
+    public void deleteObject(DeleteObjectRequest request) {
+        beforeCall();
+        bucket(request.getBucketName()).delete(request.getKey());
+    }
+
+    @Override
+    public void deleteVersion(String bucketName, String key, String versionId) {
+        deleteVersion(new DeleteVersionRequest(bucketName, key, versionId));
+    }
+
+    @Override
+    public void deleteVersion(DeleteVersionRequest request) {
+        beforeCall();
+        bucket(request.getBucketName()).deleteVersion(request.getKey(), request.getVersionId());
+    }
+
+    @Override
+    public DeleteObjectsResult deleteObjects(DeleteObjectsRequest request) {
+        beforeCall();
+        final LocalS3Bucket bucket = bucket(request.getBucketName());
+        if (request.getKeys().size() > MAX_KEYS) {
+            throw error("The XML you provided was not well-formed or did not validate against our published schema",
+                    "MalformedXML", 400);
+        }
+        final List<DeleteObjectsResult.DeletedObject> deleted = new ArrayList<>();
+        final List<MultiObjectDeleteException.DeleteError> errors = new ArrayList<>();
+        for (DeleteObjectsRequest.KeyVersion keyVersion : request.getKeys()) {
+            if (faultProfile.failBatchEntry()) {
+                final MultiObjectDeleteException.DeleteError deleteError = new MultiObjectDeleteException.DeleteError();
+                deleteError.setKey(keyVersion.getKey());
+                deleteError.setVersionId(keyVersion.getVersion());
+                deleteError.setCode("InternalError");
+                deleteError.setMessage("We encountered an internal error. Please try again.");
+                errors.add(deleteError);
+                continue;
+            }
+            final DeleteObjectsResult.DeletedObject deletedObject = new DeleteObjectsResult.DeletedObject();
+            deletedObject.setKey(keyVersion.getKey());
+            if (keyVersion.getVersion() != null) {
+                final StoredVersion removed = bucket.deleteVersion(keyVersion.getKey(), keyVersion.getVersion());
+                deletedObject.setVersionId(keyVersion.getVersion());
+                if (removed != null && removed.deleteMarker) {
+                    deletedObject.setDeleteMarker(true);
+                    deletedObject.setDeleteMarkerVersionId(removed.versionId);
+                }
+            } else {
+                final StoredVersion marker = bucket.delete(keyVersion.getKey());
+                if (marker != null) {
+                    deletedObject.setDeleteMarker(true);
+                    deletedObject.setDeleteMarkerVersionId(marker.versionId);
+                }
+            }
+            if (!request.getQuiet()) {
+                deleted.add(deletedObject);
+            }
+        }
+        if (!errors.isEmpty()) {
+            final MultiObjectDeleteException e = new MultiObjectDeleteException(errors, deleted);
+            e.setServiceName(SERVICE_NAME);
+            e.setStatusCode(200);
+            throw e;
+        }
+        return new DeleteObjectsResult(deleted);
+    }
+
+    // listing
+
+    @Override
+    public ObjectListing listObjects(String bucketName) {
+        return listObjects(new ListObjectsRequest().withBucketName(bucketName));
+    }
+
+    @Override
+    public ObjectListing listObjects(String bucketName, String prefix) {
+        return listObjects(new ListObjectsRequest().withBucketName(bucketName).withPrefix(prefix));
+    }
+
+    @Override
+    public ObjectListing listObjects(ListObjectsRequest request) {
+        beforeCall();
+        final int maxKeys = maxKeys(request.getMaxKeys());
+        final Page page = bucket(request.getBucketName())
+                .listLatest(request.getPrefix(), request.getDelimiter(), request.getMarker(), maxKeys);
+        final ObjectListing listing = new ObjectListing();
+        listing.setBucketName(request.getBucketName());
+        listing.setPrefix(request.getPrefix());
+        listing.setDelimiter(request.getDelimiter());
+        listing.setMarker(request.getMarker());
+        listing.setMaxKeys(maxKeys);
+        listing.setCommonPrefixes(page.commonPrefixes);
+        listing.setTruncated(page.truncated);
+        if (page.truncated) {
+            listing.setNextMarker(page.nextKeyMarker);
+        }
+        for (StoredVersion version : page.versions) {
+            listing.getObjectSummaries().add(summary(request.getBucketName(), version));
+        }
+        return listing;
+    }
+
+    @Override
+    public ObjectListing listNextBatchOfObjects(ObjectListing previousObjectListing) {
+        return listNextBatchOfObjects(new ListNextBatchOfObjectsRequest(previousObjectListing));
+    }
+
+    @Override
+    public ObjectListing listNextBatchOfObjects(ListNextBatchOfObjectsRequest request) {
+        final ObjectListing previous = request.getPreviousObjectListing();
+        if (!previous.isTruncated()) {
+            final ObjectListing empty = new ObjectListing();
+            empty.setBucketName(previous.getBucketName());
+            empty.setPrefix(previous.getPrefix());
+            empty.setDelimiter(previous.getDelimiter());
+            empty.setMarker(previous.getNextMarker());
+            empty.setMaxKeys(previous.getMaxKeys());
+            return empty;
+        }
+        return listObjects(request.toListObjectsRequest());
+    }
+
+    @Override
+    public ListObjectsV2Result listObjectsV2(String bucketName) {
+        return listObjectsV2(new ListObjectsV2Request().withBucketName(bucketName));
+    }
+
+    @Override
+    public ListObjectsV2Result listObjectsV2(String bucketName, String prefix) {
+        return listObjectsV2(new ListObjectsV2Request().withBucketName(bucketName).withPrefix(prefix));
+    }
+
+    @Override
+    public ListObjectsV2Result listObjectsV2(ListObjectsV2Request request) {
+        beforeCall();
+        final int maxKeys = maxKeys(request.getMaxKeys());
+        // the continuation token is the last returned key or common prefix, unencoded
+        final String marker = request.getContinuationToken() != null
+                ? request.getContinuationToken() : request.getStartAfter();
+        final Page page = bucket(request.getBucketName())
+                .listLatest(request.getPrefix(), request.getDelimiter(), marker, maxKeys);
+        final ListObjectsV2Result result = new ListObjectsV2Result();
+        result.setBucketName(request.getBucketName());
+        result.setPrefix(request.getPrefix());
+        result.setDelimiter(request.getDelimiter());
+        result.setStartAfter(request.getStartAfter());
+        result.setContinuationToken(request.getContinuationToken());
+        result.setMaxKeys(maxKeys);
+        result.setCommonPrefixes(page.commonPrefixes);
+        result.setKeyCount(page.versions.size() + page.commonPrefixes.size());
+        result.setTruncated(page.truncated);
+        if (page.truncated) {
+            result.setNextContinuationToken(page.nextKeyMarker);
+        }
+        for (StoredVersion version : page.versions) {
+            result.getObjectSummaries().add(summary(request.getBucketName(), version));
+        }
+        return result;
+    }
+
+    @Override
+    public VersionListing listVersions(String bucketName, String prefix) {
+        return listVersions(new ListVersionsRequest().withBucketName(bucketName).withPrefix(prefix));
+    }
+
+    @Override
+    public VersionListing listVersions(ListVersionsRequest request) {
+        beforeCall();
+        final int maxKeys = maxKeys(request.getMaxResults());
+        final Page page = bucket(request.getBucketName()).listVersions(request.getPrefix(), request.getDelimiter(),
+                request.getKeyMarker(), request.getVersionIdMarker(), maxKeys);
+        final VersionListing listing = new VersionListing();
+        listing.setBucketName(request.getBucketName());
+        listing.setPrefix(request.getPrefix());
+        listing.setDelimiter(request.getDelimiter());
+        listing.setKeyMarker(request.getKeyMarker());
+        listing.setVersionIdMarker(request.getVersionIdMarker());
+        listing.setMaxKeys(maxKeys);
+        listing.setCommonPrefixes(page.commonPrefixes);
+        listing.setTruncated(page.truncated);
+        if (page.truncated) {
+            listing.setNextKeyMarker(page.nextKeyMarker);
+            listing.setNextVersionIdMarker(page.nextVersionIdMarker);
+        }
+        final List<S3VersionSummary> summaries = new ArrayList<>();
+        for (StoredVersion version : page.versions) {
+            final S3VersionSummary summary = new S3VersionSummary();
+            summary.setBucketName(request.getBucketName());
+            summary.setKey(version.key);
+            summary.setVersionId(version.versionId);
+            summary.setIsLatest(page.latest.contains(version));
+            summary.setIsDeleteMarker(version.deleteMarker);
+            summary.setLastModified(version.lastModified);
+            summary.setOwner(OWNER);
+            if (!version.deleteMarker) {
+                summary.setETag(version.eTag);
+                summary.setSize(version.data.length);
+                summary.setStorageClass(StorageClass.Standard.toString());
+            }
+            summaries.add(summary);
+        }
+        listing.setVersionSummaries(summaries);
+        return listing;
+    }
+
+    @Override
+    public VersionListing listNextBatchOfVersions(VersionListing previousVersionListing) {
+        return listNextBatchOfVersions(new ListNextBatchOfVersionsRequest(previousVersionListing));
+    }
+
+    @Override
+    public VersionListing listNextBatchOfVersions(ListNextBatchOfVersionsRequest request) {
+        final VersionListing previous = request.getPreviousVersionListing();
+        if (!previous.isTruncated()) {
+            final VersionListing empty = new VersionListing();
+            empty.setBucketName(previous.getBucketName());
+            empty.setPrefix(previous.getPrefix());
+            empty.setDelimiter(previous.getDelimiter());
+            empty.setKeyMarker(previous.getNextKeyMarker());
+            empty.setVersionIdMarker(previous.getNextVersionIdMarker());
+            empty.setMaxKeys(previous.getMaxKeys());
+            return empty;
+        }
+        return listVersions(request.toListVersionsRequest());
+    }
+
+    // multipart uploads
+
+    @Override
+    public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+        beforeCall();
+        final MultipartUpload upload = bucket(request.getBucketName())
+                .initiate(request.getKey(), request.getObjectMetadata());
+        final InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+        result.setBucketName(request.getBucketName());
+        result.setKey(request.getKey());
+        result.setUploadId(upload.uploadId);
+        return result;
+    }
+
+    @Override
+    public UploadPartResult uploadPart(UploadPartRequest request) {
+        beforeCall();
+        final MultipartUpload upload = upload(request.getBucketName(), request.getUploadId());
+        if (request.getPartNumber() < 1 || request.getPartNumber() > 10000) {
+            throw error("Part number must be an integer between 1 and 10000, inclusive", "InvalidArgument", 400);
+        }
+        final byte[] data = request.getFile() != null
+                ? read(request.getFile(), request.getFileOffset(), request.getPartSize())
+                : read(request.getInputStream(), request.getPartSize());
+        final Part part = new Part(data, BinaryUtils.toHex(Md5Utils.computeMD5Hash(data)));
+        upload.parts.put(request.getPartNumber(), part);
+        final UploadPartResult result = new UploadPartResult();
+        result.setPartNumber(request.getPartNumber());
+        result.setETag(part.eTag);
+        return result;
+    }
+
+    @Override
+    public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request) {
+        beforeCall();
+        final LocalS3Bucket bucket = bucket(request.getBucketName());
+        final MultipartUpload upload = upload(request.getBucketName(), request.getUploadId());
+        final List<PartETag> partETags = request.getPartETags();
+        if (partETags == null || partETags.isEmpty()) {
+            throw error("You must specify at least one part", "MalformedXML", 400);
+        }
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        final ByteArrayOutputStream digests = new ByteArrayOutputStream();
+        final long[] partSizes = new long[partETags.size()];
+        int previousPartNumber = 0;
+        for (int i = 0; i < partETags.size(); i++) {
+            final PartETag partETag = partETags.get(i);
+            if (partETag.getPartNumber() <= previousPartNumber) {
+                throw error("The list of parts was not in ascending order.", "InvalidPartOrder", 400);
+            }
+            previousPartNumber = partETag.getPartNumber();
+            final Part part = upload.parts.get(partETag.getPartNumber());
+            if (part == null || !part.eTag.equals(stripQuotes(partETag.getETag()))) {
+                throw error("One or more of the specified parts could not be found.", "InvalidPart", 400);
+            }
+            if (i < partETags.size() - 1 && part.data.length < MIN_PART_SIZE) {
+                throw error("Your proposed upload is smaller than the minimum allowed size", "EntityTooSmall", 400);
+            }
+            content.write(part.data, 0, part.data.length);
+            final byte[] digest = BinaryUtils.fromHex(part.eTag);
+            digests.write(digest, 0, digest.length);
+            partSizes[i] = part.data.length;
+        }
+        if (bucket.removeUpload(request.getUploadId()) == null) {
+            throw noSuchUpload(request.getUploadId());
+        }
+        final String eTag = BinaryUtils.toHex(Md5Utils.computeMD5Hash(digests.toByteArray())) + "-" + partETags.size();
+        final StoredVersion version = bucket.put(upload.key, content.toByteArray(), upload.metadata, eTag, partSizes);
+        final CompleteMultipartUploadResult result = new CompleteMultipartUploadResult();
+        result.setBucketName(request.getBucketName());
+        result.setKey(upload.key);
+        result.setETag(eTag);
+        result.setVersionId(exposedVersionId(version));
+        result.setLocation("https://" + request.getBucketName() + ".s3.local/" + upload.key);
+        return result;
+    }
+
+    @Override
+    public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+        beforeCall();
+        if (bucket(request.getBucketName()).removeUpload(request.getUploadId()) == null) {
+            throw noSuchUpload(request.getUploadId());
+        }
+    }
+
+    @Override
+    public PartListing listParts(ListPartsRequest request) {
+        beforeCall();
+        final MultipartUpload upload = upload(request.getBucketName(), request.getUploadId());
+        final int maxParts = request.getMaxParts() == null ? MAX_KEYS : Math.min(request.getMaxParts(), MAX_KEYS);
+        final int marker = request.getPartNumberMarker() == null ? 0 : request.getPartNumberMarker();
+        final PartListing listing = new PartListing();
+        listing.setBucketName(request.getBucketName());
+        listing.setKey(upload.key);
+        listing.setUploadId(upload.uploadId);
+        listing.setOwner(OWNER);
+        listing.setInitiator(OWNER);
+        listing.setStorageClass(StorageClass.Standard.toString());
+        listing.setPartNumberMarker(marker);
+        listing.setMaxParts(maxParts);
+        final List<PartSummary> parts = new ArrayList<>();
+        synchronized (upload.parts) {
+            for (Map.Entry<Integer, Part> entry : upload.parts.tailMap(marker, false).entrySet()) {
+                if (parts.size() == maxParts) {
+                    listing.setTruncated(true);
+                    break;
+                }
+                final PartSummary summary = new PartSummary();
+                summary.setPartNumber(entry.getKey());
+                summary.setETag(entry.getValue().eTag);
+                summary.setSize(entry.getValue().data.length);
+                summary.setLastModified(entry.getValue().lastModified);
+                parts.add(summary);
+                listing.setNextPartNumberMarker(entry.getKey());
+            }
+        }
+        listing.setParts(parts);
+        return listing;
+    }
+
+    @Override
+    public void shutdown() {
+        // nothing to release, buckets stay available for assertions
+    }
+
+    private void beforeCall() {
+        faultProfile.beforeCall(SERVICE_NAME, "SlowDown", 503);
+    }
+
+    private LocalS3Bucket bucket(final String bucketName) {
+        final LocalS3Bucket bucket = bucketName == null ? null : buckets.get(bucketName);
+        if (bucket == null) {
+            throw error("The specified bucket does not exist", "NoSuchBucket", 404);
+        }
+        return bucket;
+    }
+
+    private MultipartUpload upload(final String bucketName, final String uploadId) {
+        final MultipartUpload upload = bucket(bucketName).upload(uploadId);
+        if (upload == null) {
+            throw noSuchUpload(uploadId);
+        }
+        return upload;
+    }
+
+    private StoredVersion find(final String bucketName, final String key, final String versionId) {
+        final LocalS3Bucket bucket = bucket(bucketName);
+        if (versionId != null) {
+            final StoredVersion version = bucket.version(key, versionId);
+            if (version == null) {
+                throw error("The specified version does not exist.", "NoSuchVersion", 404);
+            }
+            if (version.deleteMarker) {
+                throw error("The specified method is not allowed against this resource.", "MethodNotAllowed", 405);
+            }
+            return version;
+        }
+        final StoredVersion latest = bucket.latest(key);
+        if (latest == null || latest.deleteMarker) {
+            throw error("The specified key does not exist.", "NoSuchKey", 404);
+        }
+        return latest;
+    }
+
+    private static long[] range(final StoredVersion version, final long[] requested, final Integer partNumber) {
+        final long length = version.data.length;
+        if (partNumber != null) {
+            if (version.partSizes == null) {
+                if (partNumber != 1) {
+                    throw error("The requested partnumber is not satisfiable", "InvalidPartNumber", 416);
+                }
+                return new long[]{0, length - 1};
+            }
+            if (partNumber < 1 || partNumber > version.partSizes.length) {
+                throw error("The requested partnumber is not satisfiable", "InvalidPartNumber", 416);
+            }
+            long start = 0;
+            for (int i = 0; i < partNumber - 1; i++) {
+                start += version.partSizes[i];
+            }
+            return new long[]{start, start + version.partSizes[partNumber - 1] - 1};
+        }
+        if (requested == null) {
+            return new long[]{0, length - 1};
+        }
+        if (requested[0] >= length && length > 0) {
+            throw error("The requested range is not satisfiable", "InvalidRange", 416);
+        }
+        return new long[]{requested[0], Math.min(requested[1], length - 1)};
+    }
+
+    private static ObjectMetadata metadata(final StoredVersion version, final long contentLength) {
+        final ObjectMetadata metadata = version.metadata == null ? new ObjectMetadata() : version.metadata.clone();
+        metadata.setContentLength(contentLength);
+        metadata.setHeader(Headers.ETAG, version.eTag);
+        metadata.setLastModified(version.lastModified);
+        final String versionId = exposedVersionId(version);
+        if (versionId != null) {
+            metadata.setHeader(Headers.S3_VERSION_ID, versionId);
+        }
+        return metadata;
+    }
+
+    private static String exposedVersionId(final StoredVersion version) {
+        // objects written while versioning was never enabled carry no version id
+        return LocalS3Bucket.NULL_VERSION.equals(version.versionId) ? null : version.versionId;
+    }
+
+    private static S3ObjectSummary summary(final String bucketName, final StoredVersion version) {
+        final S3ObjectSummary summary = new S3ObjectSummary();
+        summary.setBucketName(bucketName);
+        summary.setKey(version.key);
+        summary.setETag(version.eTag);
+        summary.setSize(version.data.length);
+        summary.setLastModified(version.lastModified);
+        summary.setOwner(OWNER);
+        summary.setStorageClass(StorageClass.Standard.toString());
+        return summary;
+    }
+
+    private static Bucket toBucket(final LocalS3Bucket bucket) {
+        final Bucket result = new Bucket(bucket.getName());
+        result.setCreationDate(bucket.getCreationDate());
+        result.setOwner(OWNER);
+        return result;
+    }
+
+    private static int maxKeys(final Integer requested) {
+        return requested == null || requested <= 0 ? MAX_KEYS : Math.min(requested, MAX_KEYS);
+    }
+
+    private static String stripQuotes(final String eTag) {
+        return eTag != null && eTag.length() > 1 && eTag.startsWith("\"") && eTag.endsWith("\"")
+                ? eTag.substring(1, eTag.length() - 1) : eTag;
+    }
+
+    private static byte[] read(final File file, final long offset, final long length) {
+        try (InputStream in = new FileInputStream(file)) {
+            long skipped = 0;
+            while (skipped < offset) {
+                final long n = in.skip(offset - skipped);
+                if (n <= 0) {
+                    throw new IOException("Unexpected end of file " + file);
+                }
+                skipped += n;
+            }
+            return read(in, length);
+        } catch (IOException e) {
+            throw new SdkClientException("Unable to read object content", e);
+        }
+    }
+
+    private static byte[] read(final InputStream in, final long limit) {
+        try {
+            if (limit < 0) {
+                return IOUtils.toByteArray(in);
+            }
+            final ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(limit, 1 << 20));
+            final byte[] buffer = new byte[8192];
+            long remaining = limit;
+            int read;
+            while (remaining > 0 && (read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new SdkClientException("Unable to read object content", e);
+        }
+    }
+
+    private static AmazonS3Exception noSuchUpload(final String uploadId) {
+        return error("The specified upload does not exist. The upload ID may be invalid, or the upload may have "
+                + "been aborted or completed: " + uploadId, "NoSuchUpload", 404);
+    }
+
+    private static AmazonS3Exception error(final String message, final String errorCode, final int statusCode) {
+        final AmazonS3Exception e = new AmazonS3Exception(message);
+        e.setServiceName(SERVICE_NAME);
+        e.setErrorCode(errorCode);
+        e.setStatusCode(statusCode);
+        e.setErrorType(statusCode >= 500 ? AmazonS3Exception.ErrorType.Service : AmazonS3Exception.ErrorType.Client);
+        return e;
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.local;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.sqs.AbstractAmazonSQS;
+import com.amazonaws.services.sqs.model.*;
+import com.github.spranshu1.aws.utils.local.LocalSqsQueue.LocalMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process AmazonSQS for load and concurrency tests of code built on
+ * {@link com.github.spranshu1.aws.utils.sqs.SqsQueueHelper}.
+ * <p>
+ * Models standard queues: visibility timeouts, delays, long polling, receive counts, redrive to a
+ * dead-letter queue, message and batch size limits, and the batch entry rules of SendMessageBatch,
+ * DeleteMessageBatch and ChangeMessageVisibilityBatch. Latency, throttling, errors and partial batch
+ * failures are injected through the {@link FaultProfile}. FIFO queues, permissions and tags are not modelled.
+ */
+public class LocalAmazonSQS extends AbstractAmazonSQS {
+
+    static final String SERVICE_NAME = "AmazonSQS";
+
+    private static final String ACCOUNT_ID = "000000000000";
+    private static final int MAX_BATCH_ENTRIES = 10;
+    private static final int MAX_BATCH_BYTES = 262144;
+
+    private final String endpoint;
+    private final ConcurrentMap<String, LocalSqsQueue> queuesByUrl = new ConcurrentHashMap<>();
+    private volatile FaultProfile faultProfile;
+
+    /**
+     * Instantiates a new local SQS without faults.
+     */
+    public LocalAmazonSQS() {
+        this(FaultProfile.none());
+    }
+
+    /**
+     * Instantiates a new local SQS.
+     *
+     * @param faultProfile the fault profile
+     */
+    public LocalAmazonSQS(final FaultProfile faultProfile) {
+        this.endpoint = "https://sqs.local";
+        this.faultProfile = faultProfile;
+    }
+
+    /**
+     * Replaces the fault profile applied to subsequent calls.
+     *
+     * @param faultProfile the fault profile
+     */
+    public void setFaultProfile(final FaultProfile faultProfile) {
+        this.faultProfile = faultProfile;
+    }
+
+    @Override
+    public CreateQueueResult createQueue(CreateQueueRequest request) {
+        beforeCall();
+        checkRedrivePolicy(request.getAttributes());
+        final String url = endpoint + "/" + ACCOUNT_ID + "/" + request.getQueueName();
+        final LocalSqsQueue queue = queuesByUrl.computeIfAbsent(url, k -> new LocalSqsQueue(request.getQueueName(), url,
+                "arn:aws:sqs:local:" + ACCOUNT_ID + ":" + request.getQueueName(), request.getAttributes()));
+        return new CreateQueueResult().withQueueUrl(queue.getUrl());
+    }
+
+    @Override
+    public GetQueueUrlResult getQueueUrl(GetQueueUrlRequest request) {
+        beforeCall();
+        for (LocalSqsQueue queue : queuesByUrl.values()) {
+            if (queue.getName().equals(request.getQueueName())) {
+                return new GetQueueUrlResult().withQueueUrl(queue.getUrl());
+            }
+        }
+        throw error(new QueueDoesNotExistException("The specified queue does not exist for this wsdl version."),
+                "AWS.SimpleQueueService.NonExistentQueue");
+    }
+
+    @Override
+    public ListQueuesResult listQueues(ListQueuesRequest request) {
+        beforeCall();
+        final List<String> urls = new ArrayList<>();
+        for (LocalSqsQueue queue : queuesByUrl.values()) {
+            if (request.getQueueNamePrefix() == null || queue.getName().startsWith(request.getQueueNamePrefix())) {
+                urls.add(queue.getUrl());
+            }
+        }
+        return new ListQueuesResult().withQueueUrls(urls);
+    }
+
+    @Override
+    public DeleteQueueResult deleteQueue(DeleteQueueRequest request) {
+        beforeCall();
+        queue(request.getQueueUrl());
+        queuesByUrl.remove(request.getQueueUrl());
+        return new DeleteQueueResult();
+    }
+
+    @Override
+    public PurgeQueueResult purgeQueue(PurgeQueueRequest request) {
+        beforeCall();
+        queue(request.getQueueUrl()).purge();
+        return new PurgeQueueResult();
+    }
+
+    @Override
+    public GetQueueAttributesResult getQueueAttributes(GetQueueAttributesRequest request) {
+        beforeCall();
+        return new GetQueueAttributesResult()
+                .withAttributes(queue(request.getQueueUrl()).getAttributes(request.getAttributeNames()));
+    }
+
+    @Override
+    public SetQueueAttributesResult setQueueAttributes(SetQueueAttributesRequest request) {
+        beforeCall();
+        final LocalSqsQueue queue = queue(request.getQueueUrl());
+        checkRedrivePolicy(request.getAttributes());
+        queue.setAttributes(request.getAttributes());
+        return new SetQueueAttributesResult();
+    }
+
+    @Override
+    public SendMessageResult sendMessage(SendMessageRequest request) {
+        beforeCall();
+        final LocalSqsQueue queue = queue(request.getQueueUrl());
+        checkMessage(queue, request.getMessageBody(), request.getMessageAttributes());
+        final LocalMessage message = queue.send(request.getMessageBody(), request.getMessageAttributes(),
+                delaySeconds(queue, request.getDelaySeconds()));
+        return new SendMessageResult().withMessageId(message.id).withMD5OfMessageBody(message.md5OfBody);
+    }
+
+    @Override
+    public SendMessageBatchResult sendMessageBatch(SendMessageBatchRequest request) {
+        beforeCall();
+        final LocalSqsQueue queue = queue(request.getQueueUrl());
+        final List<String> ids = new ArrayList<>();
+        long batchBytes = 0;
+        for (SendMessageBatchRequestEntry entry : request.getEntries()) {
+            ids.add(entry.getId());
+            batchBytes += messageBytes(entry.getMessageBody(), entry.getMessageAttributes());
+        }
+        checkBatch(ids);
+        if (batchBytes > MAX_BATCH_BYTES) {
+            throw error(new BatchRequestTooLongException("Batch requests cannot be longer than 262144 bytes."),
+                    "AWS.SimpleQueueService.BatchRequestTooLong");
+        }
+        final SendMessageBatchResult result = new SendMessageBatchResult();
+        for (SendMessageBatchRequestEntry entry : request.getEntries()) {
+            if (faultProfile.failBatchEntry()) {
+                result.getFailed().add(internalError(entry.getId()));
+                continue;
+            }
+            try {
+                checkMessage(queue, entry.getMessageBody(), entry.getMessageAttributes());
+            } catch (AmazonServiceException e) {
+                result.getFailed().add(new BatchResultErrorEntry().withId(entry.getId())
+                        .withSenderFault(true).withCode(e.getErrorCode()).withMessage(e.getErrorMessage()));
+                continue;
+            }
+            final LocalMessage message = queue.send(entry.getMessageBody(), entry.getMessageAttributes(),
+                    delaySeconds(queue, entry.getDelaySeconds()));
+            result.getSuccessful().add(new SendMessageBatchResultEntry().withId(entry.getId())
+                    .withMessageId(message.id).withMD5OfMessageBody(message.md5OfBody));
+        }
+        return result;
+    }
+
+    @Override
+    public ReceiveMessageResult receiveMessage(ReceiveMessageRequest request) {
+        beforeCall();
+        final LocalSqsQueue queue = queue(request.getQueueUrl());
+        final int max = request.getMaxNumberOfMessages() == null ? 1 : request.getMaxNumberOfMessages();
+        if (max < 1 || max > MAX_BATCH_ENTRIES) {
+            throw error(new AmazonSQSException("Value " + max + " for parameter MaxNumberOfMessages is invalid. "
+                    + "Reason: Must be between 1 and 10, if provided."), "InvalidParameterValue");
+        }
+        final int waitSeconds = request.getWaitTimeSeconds() != null
+                ? request.getWaitTimeSeconds() : queue.intAttribute(LocalSqsQueue.RECEIVE_WAIT_TIME_SECONDS);
+        if (waitSeconds < 0 || waitSeconds > 20) {
+            throw error(new AmazonSQSException("Value " + waitSeconds + " for parameter WaitTimeSeconds is invalid. "
+                    + "Reason: Must be >= 0 and <= 20, if provided."), "InvalidParameterValue");
+        }
+        final int visibilityTimeout = request.getVisibilityTimeout() != null
+                ? request.getVisibilityTimeout() : queue.intAttribute(LocalSqsQueue.VISIBILITY_TIMEOUT);
+        // without a target, messages over the max receive count stay in the source queue
+        final LocalSqsQueue deadLetterTarget = queueByArn(queue.deadLetterTargetArn());
+        final List<LocalMessage> deadLettered = new ArrayList<>();
+        final List<LocalMessage> received;
+        try {
+            received = queue.receive(max, visibilityTimeout, TimeUnit.SECONDS.toMillis(waitSeconds),
+                    deadLetterTarget == null ? null : deadLettered);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new com.amazonaws.AbortedException("Receive was interrupted", e);
+        }
+        for (LocalMessage message : deadLettered) {
+            deadLetterTarget.send(message.body, message.messageAttributes, 0);
+        }
+        final List<Message> messages = new ArrayList<>(received.size());
+        for (LocalMessage message : received) {
+            messages.add(message.toMessage(request.getAttributeNames(), request.getMessageAttributeNames()));
+        }
+        return new ReceiveMessageResult().withMessages(messages);
+    }
+
+    @Override
+    public DeleteMessageResult deleteMessage(DeleteMessageRequest request) {
+        beforeCall();
+        if (!queue(request.getQueueUrl()).delete(request.getReceiptHandle())) {
+            throw invalidReceipt(request.getReceiptHandle());
+        }
+        return new DeleteMessageResult();
+    }
+
+    @Override
+    public DeleteMessageBatchResult deleteMessageBatch(DeleteMessageBatchRequest request) {
+        beforeCall();
+        final LocalSqsQueue queue = queue(request.getQueueUrl());
+        final List<String> ids = new ArrayList<>();
+        for (DeleteMessageBatchRequestEntry entry : request.getEntries()) {
+            ids.add(entry.getId());
+        }
+        checkBatch(ids);
+        final DeleteMessageBatchResult result = new DeleteMessageBatchResult();
+        for (DeleteMessageBatchRequestEntry entry : request.getEntries()) {
+            if (faultProfile.failBatchEntry()) {
+                result.getFailed().add(internalError(entry.getId()));
+            } else if (queue.delete(entry.getReceiptHandle())) {
+                result.getSuccessful().add(new DeleteMessageBatchResultEntry().withId(entry.getId()));
+            } else {
+                result.getFailed().add(new BatchResultErrorEntry().withId(entry.getId()).withSenderFault(true)
+                        .withCode("ReceiptHandleIsInvalid").withMessage("The receipt handle is not valid."));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public ChangeMessageVisibilityResult changeMessageVisibility(ChangeMessageVisibilityRequest request) {
+        beforeCall();
+        final String errorCode = queue(request.getQueueUrl())
+                .changeVisibility(request.getReceiptHandle(), request.getVisibilityTimeout());
+        if ("ReceiptHandleIsInvalid".equals(errorCode)) {
+            throw invalidReceipt(request.getReceiptHandle());
+        }
+        if (errorCode != null) {
+            throw error(new MessageNotInflightException("The message referred to is not in flight."), errorCode);
+        }
+        return new ChangeMessageVisibilityResult();
+    }
+
+    @Override
+    public ChangeMessageVisibilityBatchResult changeMessageVisibilityBatch(ChangeMessageVisibilityBatchRequest request) {
+        beforeCall();
+        final LocalSqsQueue queue = queue(request.getQueueUrl());
+        final List<String> ids = new ArrayList<>();
+        for (ChangeMessageVisibilityBatchRequestEntry entry : request.getEntries()) {
+            ids.add(entry.getId());
+        }
+        checkBatch(ids);
+        final ChangeMessageVisibilityBatchResult result = new ChangeMessageVisibilityBatchResult();
+        for (ChangeMessageVisibilityBatchRequestEntry entry : request.getEntries()) {
+            if (faultProfile.failBatchEntry()) {
+                result.getFailed().add(internalError(entry.getId()));
+                continue;
+            }
+            final String errorCode = queue.changeVisibility(entry.getReceiptHandle(), entry.getVisibilityTimeout());
+            if (errorCode == null) {
+                result.getSuccessful().add(new ChangeMessageVisibilityBatchResultEntry().withId(entry.getId()));
+            } else {
+                result.getFailed().add(new BatchResultErrorEntry().withId(entry.getId()).withSenderFault(true)
+                        .withCode(errorCode).withMessage("Visibility of the message could not be changed."));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void shutdown() {
+        // nothing to release, queues stay available for assertions
+    }
+
+    private void beforeCall() {
+        faultProfile.beforeCall(SERVICE_NAME, "RequestThrottled", 400);
+    }
+
+    private LocalSqsQueue queue(final String queueUrl) {
+        final LocalSqsQueue queue = queueUrl == null ? null : queuesByUrl.get(queueUrl);
+        if (queue == null) {
+            throw error(new QueueDoesNotExistException("The specified queue does not exist for this wsdl version."),
+                    "AWS.SimpleQueueService.NonExistentQueue");
+        }
+        return queue;
+    }
+
+    private LocalSqsQueue queueByArn(final String arn) {
+        if (arn == null) {
+            return null;
+        }
+        for (LocalSqsQueue queue : queuesByUrl.values()) {
+            if (queue.getArn().equals(arn)) {
+                return queue;
+            }
+        }
+        return null;
+    }
+
+    private void checkRedrivePolicy(final Map<String, String> attributes) {
+        final String policy = attributes == null ? null : attributes.get(LocalSqsQueue.REDRIVE_POLICY);
+        if (policy != null && !policy.isEmpty() && queueByArn(LocalSqsQueue.deadLetterTargetArn(policy)) == null) {
+            throw error(new AmazonSQSException("Value " + policy + " for parameter RedrivePolicy is invalid. "
+                    + "Reason: Dead letter target does not exist."), "InvalidParameterValue");
+        }
+    }
+
+    private static int delaySeconds(final LocalSqsQueue queue, final Integer requested) {
+        final int delaySeconds = requested != null ? requested : queue.intAttribute(LocalSqsQueue.DELAY_SECONDS);
+        if (delaySeconds < 0 || delaySeconds > 900) {
+            throw error(new AmazonSQSException("Value " + delaySeconds + " for parameter DelaySeconds is invalid. "
+                    + "Reason: DelaySeconds must be >= 0 and <= 900."), "InvalidParameterValue");
+        }
+        return delaySeconds;
+    }
+
+    private static void checkMessage(final LocalSqsQueue queue, final String body,
+                                     final Map<String, MessageAttributeValue> attributes) {
+        if (body == null || body.isEmpty()) {
+            throw error(new AmazonSQSException("The request must contain the parameter MessageBody."),
+                    "MissingParameter");
+        }
+        final int maxBytes = queue.intAttribute(LocalSqsQueue.MAXIMUM_MESSAGE_SIZE);
+        if (messageBytes(body, attributes) > maxBytes) {
+            throw error(new AmazonSQSException("One or more parameters are invalid. Reason: Message must be shorter than "
+                    + maxBytes + " bytes."), "InvalidParameterValue");
+        }
+    }
+
+    private static long messageBytes(final String body, final Map<String, MessageAttributeValue> attributes) {
+        long bytes = body == null ? 0 : body.getBytes(StandardCharsets.UTF_8).length;
+        if (attributes != null) {
+            for (Map.Entry<String, MessageAttributeValue> attribute : attributes.entrySet()) {
+                bytes += attribute.getKey().length();
+                final MessageAttributeValue value = attribute.getValue();
+                bytes += value.getDataType() == null ? 0 : value.getDataType().length();
+                bytes += value.getStringValue() == null ? 0 : value.getStringValue().getBytes(StandardCharsets.UTF_8).length;
+                bytes += value.getBinaryValue() == null ? 0 : value.getBinaryValue().remaining();
+            }
+        }
+        return bytes;
+    }
+
+    private static void checkBatch(final List<String> ids) {
+        if (ids.isEmpty()) {
+            throw error(new EmptyBatchRequestException("There should be at least one entry in the request."),
+                    "AWS.SimpleQueueService.EmptyBatchRequest");
+        }
+        if (ids.size() > MAX_BATCH_ENTRIES) {
+            throw error(new TooManyEntriesInBatchRequestException("Maximum number of entries per request are 10. You have sent "
+                    + ids.size() + "."), "AWS.SimpleQueueService.TooManyEntriesInBatchRequest");
+        }
+        final Set<String> distinct = new HashSet<>(ids);
+        if (distinct.size() != ids.size()) {
+            throw error(new BatchEntryIdsNotDistinctException("Id values are not distinct."),
+                    "AWS.SimpleQueueService.BatchEntryIdsNotDistinct");
+        }
+    }
+
+    private static BatchResultErrorEntry internalError(final String id) {
+        return new BatchResultErrorEntry().withId(id).withSenderFault(false)
+                .withCode("InternalError").withMessage("We encountered an internal error. Please try again.");
+    }
+
+    private static ReceiptHandleIsInvalidException invalidReceipt(final String receiptHandle) {
+        return error(new ReceiptHandleIsInvalidException("The input receipt handle \"" + receiptHandle
+                + "\" is not a valid receipt handle."), "ReceiptHandleIsInvalid");
+    }
+
+    private static <E extends AmazonSQSException> E error(final E e, final String errorCode) {
+        e.setServiceName(SERVICE_NAME);
+        e.setErrorCode(errorCode);
+        e.setStatusCode(400);
+        e.setErrorType(AmazonServiceException.ErrorType.Client);
+        return e;
+    }
+}
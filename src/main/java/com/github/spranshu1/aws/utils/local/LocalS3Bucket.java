@@ -0,0 +1,337 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.local;
+
+import com.amazonaws.services.s3.model.BucketVersioningConfiguration;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State of one bucket of {@link LocalAmazonS3}: object versions (newest first per key), the
+ * versioning status and the multipart uploads in progress. Every method takes the bucket monitor.
+ */
+final class LocalS3Bucket {
+
+    /** Version id S3 gives to objects written while versioning is off or suspended. */
+    static final String NULL_VERSION = "null";
+
+    private final String name;
+    private final Date creationDate = new Date();
+    private final NavigableMap<String, LinkedList<StoredVersion>> objects = new TreeMap<>();
+    private final Map<String, MultipartUpload> uploads = new HashMap<>();
+    private final AtomicLong sequence;
+    private String versioningStatus = BucketVersioningConfiguration.OFF;
+
+    LocalS3Bucket(final String name, final AtomicLong sequence) {
+        this.name = name;
+        this.sequence = sequence;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    Date getCreationDate() {
+        return creationDate;
+    }
+
+    synchronized String getVersioningStatus() {
+        return versioningStatus;
+    }
+
+    synchronized void setVersioningStatus(final String status) {
+        versioningStatus = status;
+    }
+
+    synchronized boolean isEmpty() {
+        return objects.isEmpty() && uploads.isEmpty();
+    }
+
+    synchronized StoredVersion put(final String key, final byte[] data, final ObjectMetadata metadata,
+                                   final String eTag, final long[] partSizes) {
+        final StoredVersion version = new StoredVersion(key, nextVersionId(), data, metadata, eTag, false, partSizes);
+        add(version);
+        return version;
+    }
+
+    synchronized StoredVersion latest(final String key) {
+        final LinkedList<StoredVersion> versions = objects.get(key);
+        return versions == null ? null : versions.getFirst();
+    }
+
+    synchronized StoredVersion version(final String key, final String versionId) {
+        final LinkedList<StoredVersion> versions = objects.get(key);
+        if (versions != null) {
+            for (StoredVersion version : versions) {
+                if (version.versionId.equals(versionId)) {
+                    return version;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Deletes the current version of a key: removes it while versioning is off, otherwise puts a delete
+     * marker on top.
+     *
+     * @return the delete marker, null when versioning is off
+     */
+    synchronized StoredVersion delete(final String key) {
+        if (BucketVersioningConfiguration.OFF.equals(versioningStatus)) {
+            objects.remove(key);
+            return null;
+        }
+        final StoredVersion marker = new StoredVersion(key, nextVersionId(), null, null, null, true, null);
+        add(marker);
+        return marker;
+    }
+
+    synchronized StoredVersion deleteVersion(final String key, final String versionId) {
+        final LinkedList<StoredVersion> versions = objects.get(key);
+        if (versions == null) {
+            return null;
+        }
+        for (Iterator<StoredVersion> it = versions.iterator(); it.hasNext(); ) {
+            final StoredVersion version = it.next();
+            if (version.versionId.equals(versionId)) {
+                it.remove();
+                if (versions.isEmpty()) {
+                    objects.remove(key);
+                }
+                return version;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lists the keys whose current version is not a delete marker.
+     */
+    synchronized Page listLatest(final String prefix, final String delimiter, final String marker, final int maxKeys) {
+        final Page page = new Page();
+        String rolledUp = rolledUpMarker(delimiter, marker);
+        final NavigableMap<String, LinkedList<StoredVersion>> candidates = marker == null
+                ? objects : objects.tailMap(marker, false);
+        for (Map.Entry<String, LinkedList<StoredVersion>> entry : candidates.entrySet()) {
+            final String key = entry.getKey();
+            final StoredVersion latest = entry.getValue().getFirst();
+            if (!matches(key, prefix) || latest.deleteMarker || (rolledUp != null && key.startsWith(rolledUp))) {
+                continue;
+            }
+            if (page.size() == maxKeys) {
+                page.truncated = true;
+                break;
+            }
+            final String commonPrefix = commonPrefix(key, prefix, delimiter);
+            if (commonPrefix != null) {
+                page.commonPrefixes.add(commonPrefix);
+                rolledUp = commonPrefix;
+                page.nextKeyMarker = commonPrefix;
+            } else {
+                page.versions.add(latest);
+                page.nextKeyMarker = key;
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Lists every version and delete marker, newest first per key.
+     */
+    synchronized Page listVersions(final String prefix, final String delimiter, final String keyMarker,
+                                   final String versionIdMarker, final int maxKeys) {
+        final Page page = new Page();
+        String rolledUp = rolledUpMarker(delimiter, keyMarker);
+        final boolean resumeWithinKey = keyMarker != null && versionIdMarker != null && !versionIdMarker.isEmpty();
+        final NavigableMap<String, LinkedList<StoredVersion>> candidates = keyMarker == null
+                ? objects : objects.tailMap(keyMarker, resumeWithinKey);
+        for (Map.Entry<String, LinkedList<StoredVersion>> entry : candidates.entrySet()) {
+            final String key = entry.getKey();
+            if (!matches(key, prefix) || (rolledUp != null && key.startsWith(rolledUp))) {
+                continue;
+            }
+            final String commonPrefix = commonPrefix(key, prefix, delimiter);
+            if (commonPrefix != null) {
+                if (page.size() == maxKeys) {
+                    page.truncated = true;
+                    return page;
+                }
+                page.commonPrefixes.add(commonPrefix);
+                rolledUp = commonPrefix;
+                page.nextKeyMarker = commonPrefix;
+                page.nextVersionIdMarker = null;
+                continue;
+            }
+            boolean skipping = resumeWithinKey && key.equals(keyMarker);
+            boolean first = true;
+            for (StoredVersion version : entry.getValue()) {
+                if (skipping) {
+                    skipping = !version.versionId.equals(versionIdMarker);
+                    first = false;
+                    continue;
+                }
+                if (page.size() == maxKeys) {
+                    page.truncated = true;
+                    return page;
+                }
+                page.versions.add(version);
+                if (first) {
+                    page.latest.add(version);
+                }
+                first = false;
+                page.nextKeyMarker = key;
+                page.nextVersionIdMarker = version.versionId;
+            }
+        }
+        return page;
+    }
+
+    synchronized MultipartUpload initiate(final String key, final ObjectMetadata metadata) {
+        final MultipartUpload upload = new MultipartUpload(String.format("%016x", sequence.incrementAndGet()),
+                key, metadata);
+        uploads.put(upload.uploadId, upload);
+        return upload;
+    }
+
+    synchronized MultipartUpload upload(final String uploadId) {
+        return uploads.get(uploadId);
+    }
+
+    synchronized MultipartUpload removeUpload(final String uploadId) {
+        return uploads.remove(uploadId);
+    }
+
+    private void add(final StoredVersion version) {
+        final LinkedList<StoredVersion> versions = objects.computeIfAbsent(version.key, k -> new LinkedList<>());
+        if (BucketVersioningConfiguration.OFF.equals(versioningStatus)) {
+            versions.clear();
+        } else if (NULL_VERSION.equals(version.versionId)) {
+            versions.removeIf(v -> NULL_VERSION.equals(v.versionId));
+        }
+        versions.addFirst(version);
+    }
+
+    private String nextVersionId() {
+        return BucketVersioningConfiguration.ENABLED.equals(versioningStatus)
+                ? String.format("%016x", sequence.incrementAndGet()) : NULL_VERSION;
+    }
+
+    private static boolean matches(final String key, final String prefix) {
+        return prefix == null || key.startsWith(prefix);
+    }
+
+    private static String commonPrefix(final String key, final String prefix, final String delimiter) {
+        if (delimiter == null || delimiter.isEmpty()) {
+            return null;
+        }
+        final int from = prefix == null ? 0 : prefix.length();
+        final int index = key.indexOf(delimiter, from);
+        return index < 0 ? null : key.substring(0, index + delimiter.length());
+    }
+
+    private static String rolledUpMarker(final String delimiter, final String marker) {
+        // a marker that is a common prefix resumes after every key it rolls up
+        return delimiter != null && !delimiter.isEmpty() && marker != null && marker.endsWith(delimiter) ? marker : null;
+    }
+
+    /**
+     * One stored object version or delete marker.
+     */
+    static final class StoredVersion {
+        final String key;
+        final String versionId;
+        final byte[] data;
+        final ObjectMetadata metadata;
+        final String eTag;
+        final boolean deleteMarker;
+        final long[] partSizes;
+        final Date lastModified = new Date();
+
+        private StoredVersion(final String key, final String versionId, final byte[] data, final ObjectMetadata metadata,
+                              final String eTag, final boolean deleteMarker, final long[] partSizes) {
+            this.key = key;
+            this.versionId = versionId;
+            this.data = data;
+            this.metadata = metadata;
+            this.eTag = eTag;
+            this.deleteMarker = deleteMarker;
+            this.partSizes = partSizes;
+        }
+    }
+
+    /**
+     * A multipart upload in progress; parts are kept by part number.
+     */
+    static final class MultipartUpload {
+        final String uploadId;
+        final String key;
+        final ObjectMetadata metadata;
+        final Date initiated = new Date();
+        final NavigableMap<Integer, Part> parts = Collections.synchronizedNavigableMap(new TreeMap<>());
+
+        private MultipartUpload(final String uploadId, final String key, final ObjectMetadata metadata) {
+            this.uploadId = uploadId;
+            this.key = key;
+            this.metadata = metadata;
+        }
+    }
+
+    /**
+     * An uploaded part.
+     */
+    static final class Part {
+        final byte[] data;
+        final String eTag;
+        final Date lastModified = new Date();
+
+        Part(final byte[] data, final String eTag) {
+            this.data = data;
+            this.eTag = eTag;
+        }
+    }
+
+    /**
+     * One page of a listing.
+     */
+    static final class Page {
+        final List<StoredVersion> versions = new ArrayList<>();
+        final Set<StoredVersion> latest = new HashSet<>();
+        final List<String> commonPrefixes = new ArrayList<>();
+        boolean truncated;
+        String nextKeyMarker;
+        String nextVersionIdMarker;
+
+        private int size() {
+            return versions.size() + commonPrefixes.size();
+        }
+    }
+}
@@ -0,0 +1,432 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.local;
+
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.MessageAttributeValue;
+import com.amazonaws.util.Md5Utils;
+import com.amazonaws.util.BinaryUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * State of one queue of {@link LocalAmazonSQS}: visible messages in send order, in-flight and
+ * delayed messages ordered by the time they become visible, and receipt handles of received messages.
+ */
+class LocalSqsQueue {
+
+    static final String VISIBILITY_TIMEOUT = "VisibilityTimeout";
+    static final String DELAY_SECONDS = "DelaySeconds";
+    static final String RECEIVE_WAIT_TIME_SECONDS = "ReceiveMessageWaitTimeSeconds";
+    static final String MAXIMUM_MESSAGE_SIZE = "MaximumMessageSize";
+    static final String REDRIVE_POLICY = "RedrivePolicy";
+    static final String QUEUE_ARN = "QueueArn";
+
+    private static final Pattern MAX_RECEIVE_COUNT = Pattern.compile("\"maxReceiveCount\"\\s*:\\s*\"?(\\d+)");
+    private static final Pattern DEAD_LETTER_TARGET = Pattern.compile("\"deadLetterTargetArn\"\\s*:\\s*\"([^\"]+)\"");
+
+    private final String name;
+    private final String url;
+    private final String arn;
+    private final long createdAt;
+    private final Map<String, String> attributes = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition messagesAvailable = lock.newCondition();
+    private final ArrayDeque<LocalMessage> visible = new ArrayDeque<>();
+    private final PriorityQueue<Pending> pending = new PriorityQueue<>();
+    private final Map<String, LocalMessage> byReceipt = new HashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    LocalSqsQueue(final String name, final String url, final String arn, final Map<String, String> initialAttributes) {
+        this.name = name;
+        this.url = url;
+        this.arn = arn;
+        this.createdAt = System.currentTimeMillis();
+        attributes.put(VISIBILITY_TIMEOUT, "30");
+        attributes.put(DELAY_SECONDS, "0");
+        attributes.put(RECEIVE_WAIT_TIME_SECONDS, "0");
+        attributes.put(MAXIMUM_MESSAGE_SIZE, "262144");
+        attributes.put("MessageRetentionPeriod", "345600");
+        if (initialAttributes != null) {
+            attributes.putAll(initialAttributes);
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    String getArn() {
+        return arn;
+    }
+
+    int intAttribute(final String attributeName) {
+        return Integer.parseInt(attributes.get(attributeName));
+    }
+
+    void setAttributes(final Map<String, String> newAttributes) {
+        attributes.putAll(newAttributes);
+    }
+
+    Map<String, String> getAttributes(final Collection<String> names) {
+        final Map<String, String> result = new HashMap<>();
+        final Map<String, String> all = new HashMap<>(attributes);
+        all.put(QUEUE_ARN, arn);
+        all.put("CreatedTimestamp", Long.toString(createdAt / 1000));
+        lock.lock();
+        try {
+            final long now = System.currentTimeMillis();
+            promote(now);
+            int notVisible = 0;
+            int delayed = 0;
+            for (Pending entry : pending) {
+                if (entry.isCurrent()) {
+                    if (entry.message.receipt == null) {
+                        delayed++;
+                    } else {
+                        notVisible++;
+                    }
+                }
+            }
+            all.put("ApproximateNumberOfMessages", Integer.toString(countVisible()));
+            all.put("ApproximateNumberOfMessagesNotVisible", Integer.toString(notVisible));
+            all.put("ApproximateNumberOfMessagesDelayed", Integer.toString(delayed));
+        } finally {
+            lock.unlock();
+        }
+        for (Map.Entry<String, String> attribute : all.entrySet()) {
+            if (names == null || names.contains("All") || names.contains(attribute.getKey())) {
+                result.put(attribute.getKey(), attribute.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Max receive count of the redrive policy, 0 if there is none.
+     */
+    int maxReceiveCount() {
+        final String policy = attributes.get(REDRIVE_POLICY);
+        if (policy == null) {
+            return 0;
+        }
+        final Matcher matcher = MAX_RECEIVE_COUNT.matcher(policy);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+    }
+
+    String deadLetterTargetArn() {
+        return deadLetterTargetArn(attributes.get(REDRIVE_POLICY));
+    }
+
+    /**
+     * Dead letter target of a redrive policy, null if there is no policy or it names no target.
+     */
+    static String deadLetterTargetArn(final String redrivePolicy) {
+        if (redrivePolicy == null) {
+            return null;
+        }
+        final Matcher matcher = DEAD_LETTER_TARGET.matcher(redrivePolicy);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    LocalMessage send(final String body, final Map<String, MessageAttributeValue> messageAttributes,
+                      final int delaySeconds) {
+        final long now = System.currentTimeMillis();
+        final LocalMessage message = new LocalMessage(name + "-" + sequence.incrementAndGet(), body,
+                messageAttributes, now);
+        lock.lock();
+        try {
+            if (delaySeconds > 0) {
+                message.visibleAt = now + TimeUnit.SECONDS.toMillis(delaySeconds);
+                pending.add(new Pending(message));
+            } else {
+                visible.add(message);
+                messagesAvailable.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return message;
+    }
+
+    /**
+     * Receives up to 'max' messages, waiting up to 'waitMillis' for the first one. Messages that
+     * exceeded the redrive policy are removed and added to 'deadLettered' instead, unless it is null
+     * because the dead letter target does not exist.
+     */
+    List<LocalMessage> receive(final int max, final int visibilityTimeoutSeconds, final long waitMillis,
+                               final List<LocalMessage> deadLettered) throws InterruptedException {
+        final int maxReceiveCount = maxReceiveCount();
+        final long deadline = System.currentTimeMillis() + waitMillis;
+        final List<LocalMessage> received = new ArrayList<>();
+        lock.lock();
+        try {
+            while (true) {
+                final long now = System.currentTimeMillis();
+                promote(now);
+                LocalMessage message;
+                while (received.size() < max && (message = visible.poll()) != null) {
+                    if (message.deleted) {
+                        continue;
+                    }
+                    if (deadLettered != null && maxReceiveCount > 0 && message.receiveCount >= maxReceiveCount) {
+                        remove(message);
+                        deadLettered.add(message);
+                        continue;
+                    }
+                    if (message.receipt != null) {
+                        byReceipt.remove(message.receipt);
+                    }
+                    message.receiveCount++;
+                    if (message.firstReceivedAt == 0) {
+                        message.firstReceivedAt = now;
+                    }
+                    message.receipt = url.hashCode() + "-" + message.id + "-" + message.receiveCount;
+                    message.visibleAt = now + TimeUnit.SECONDS.toMillis(visibilityTimeoutSeconds);
+                    message.version++;
+                    byReceipt.put(message.receipt, message);
+                    pending.add(new Pending(message));
+                    received.add(message.snapshot());
+                }
+                if (!received.isEmpty() || now >= deadline) {
+                    return received;
+                }
+                long waitFor = deadline - now;
+                final Pending next = pending.peek();
+                if (next != null) {
+                    waitFor = Math.min(waitFor, Math.max(1L, next.visibleAt - now));
+                }
+                messagesAvailable.await(waitFor, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the message with the receipt handle.
+     *
+     * @return false if the receipt handle was never issued by this queue
+     */
+    boolean delete(final String receipt) {
+        lock.lock();
+        try {
+            final LocalMessage message = byReceipt.remove(receipt);
+            if (message == null) {
+                // deleting an already deleted message succeeds, as in SQS
+                return isOwnReceipt(receipt);
+            }
+            remove(message);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Changes the visibility timeout of an in-flight message.
+     *
+     * @return null on success, otherwise the error code
+     */
+    String changeVisibility(final String receipt, final int visibilityTimeoutSeconds) {
+        lock.lock();
+        try {
+            final LocalMessage message = byReceipt.get(receipt);
+            if (message == null) {
+                return isOwnReceipt(receipt) ? "AWS.SimpleQueueService.MessageNotInflight" : "ReceiptHandleIsInvalid";
+            }
+            final long now = System.currentTimeMillis();
+            promote(now);
+            if (message.visibleAt <= now) {
+                return "AWS.SimpleQueueService.MessageNotInflight";
+            }
+            message.visibleAt = now + TimeUnit.SECONDS.toMillis(visibilityTimeoutSeconds);
+            message.version++;
+            pending.add(new Pending(message));
+            if (visibilityTimeoutSeconds == 0) {
+                promote(now);
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void purge() {
+        lock.lock();
+        try {
+            visible.clear();
+            pending.clear();
+            byReceipt.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isOwnReceipt(final String receipt) {
+        return receipt != null && receipt.startsWith(url.hashCode() + "-" + name + "-");
+    }
+
+    private void remove(final LocalMessage message) {
+        if (message.deleted) {
+            return;
+        }
+        message.deleted = true;
+        if (message.receipt != null) {
+            byReceipt.remove(message.receipt);
+        }
+    }
+
+    private int countVisible() {
+        int count = 0;
+        for (LocalMessage message : visible) {
+            if (!message.deleted) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Moves messages whose delay or visibility timeout expired back to the visible messages. */
+    private void promote(final long now) {
+        boolean promoted = false;
+        Pending next;
+        while ((next = pending.peek()) != null && next.visibleAt <= now) {
+            pending.poll();
+            if (next.isCurrent()) {
+                visible.add(next.message);
+                promoted = true;
+            }
+        }
+        if (promoted) {
+            messagesAvailable.signalAll();
+        }
+    }
+
+    /**
+     * A message with its delivery state.
+     */
+    static final class LocalMessage {
+        final String id;
+        final String body;
+        final String md5OfBody;
+        final Map<String, MessageAttributeValue> messageAttributes;
+        final long sentAt;
+        int receiveCount;
+        long firstReceivedAt;
+        long visibleAt;
+        int version;
+        String receipt;
+        boolean deleted;
+
+        LocalMessage(final String id, final String body, final Map<String, MessageAttributeValue> messageAttributes,
+                     final long sentAt) {
+            this.id = id;
+            this.body = body;
+            this.md5OfBody = BinaryUtils.toHex(Md5Utils.computeMD5Hash(body.getBytes(StandardCharsets.UTF_8)));
+            this.messageAttributes = messageAttributes == null
+                    ? new HashMap<>() : new HashMap<>(messageAttributes);
+            this.sentAt = sentAt;
+        }
+
+        /** Copy of the delivery state at receive time, safe to hand out. */
+        LocalMessage snapshot() {
+            final LocalMessage copy = new LocalMessage(id, body, messageAttributes, sentAt, md5OfBody);
+            copy.receiveCount = receiveCount;
+            copy.firstReceivedAt = firstReceivedAt;
+            copy.receipt = receipt;
+            return copy;
+        }
+
+        private LocalMessage(final String id, final String body, final Map<String, MessageAttributeValue> messageAttributes,
+                             final long sentAt, final String md5OfBody) {
+            this.id = id;
+            this.body = body;
+            this.md5OfBody = md5OfBody;
+            this.messageAttributes = messageAttributes;
+            this.sentAt = sentAt;
+        }
+
+        Message toMessage(final Collection<String> attributeNames, final Collection<String> messageAttributeNames) {
+            final Message message = new Message()
+                    .withMessageId(id)
+                    .withReceiptHandle(receipt)
+                    .withBody(body)
+                    .withMD5OfBody(md5OfBody);
+            final Map<String, String> systemAttributes = new HashMap<>();
+            systemAttributes.put("SentTimestamp", Long.toString(sentAt));
+            systemAttributes.put("ApproximateReceiveCount", Integer.toString(receiveCount));
+            systemAttributes.put("ApproximateFirstReceiveTimestamp", Long.toString(firstReceivedAt));
+            systemAttributes.put("SenderId", "000000000000");
+            for (Map.Entry<String, String> attribute : systemAttributes.entrySet()) {
+                if (attributeNames != null && (attributeNames.contains("All")
+                        || attributeNames.contains(attribute.getKey()))) {
+                    message.addAttributesEntry(attribute.getKey(), attribute.getValue());
+                }
+            }
+            for (Map.Entry<String, MessageAttributeValue> attribute : messageAttributes.entrySet()) {
+                if (messageAttributeNames != null && (messageAttributeNames.contains("All")
+                        || messageAttributeNames.contains(".*")
+                        || messageAttributeNames.contains(attribute.getKey()))) {
+                    message.addMessageAttributesEntry(attribute.getKey(), attribute.getValue());
+                }
+            }
+            return message;
+        }
+    }
+
+    private static final class Pending implements Comparable<Pending> {
+        private final LocalMessage message;
+        private final long visibleAt;
+        private final int version;
+
+        private Pending(final LocalMessage message) {
+            this.message = message;
+            this.visibleAt = message.visibleAt;
+            this.version = message.version;
+        }
+
+        /** Whether this entry still describes the message, i.e. it was not deleted or re-scheduled since. */
+        private boolean isCurrent() {
+            return !message.deleted && version == message.version;
+        }
+
+        @Override
+        public int compareTo(final Pending other) {
+            return Long.compare(visibleAt, other.visibleAt);
+        }
+    }
+}
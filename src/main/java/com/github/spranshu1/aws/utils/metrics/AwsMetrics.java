@@ -0,0 +1,162 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.metrics;
+
+import com.amazonaws.Request;
+import com.amazonaws.SdkBaseException;
+import com.amazonaws.handlers.HandlerAfterAttemptContext;
+import com.amazonaws.handlers.HandlerBeforeAttemptContext;
+import com.amazonaws.handlers.HandlerContextKey;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.retry.RetryUtils;
+
+/**
+ * Entry point of the helper instrumentation. Metrics are off until a listener is installed; while
+ * off, an instrumented call costs one volatile read.
+ * <p>
+ * Typical call site:
+ * <pre>
+ * final long start = AwsMetrics.start();
+ * ... AWS call ...
+ * AwsMetrics.record(Operation.SQS_SEND, start, bytes, true);
+ * </pre>
+ * Retries and throttles happen inside the AWS client and are reported by {@link #requestHandler()},
+ * which has to be registered on the client (clients of the
+ * {@link com.github.spranshu1.aws.utils.client.AwsClientRegistry} have it already).
+ */
+public final class AwsMetrics {
+
+    private static final HandlerContextKey<Integer> ATTEMPTS = new HandlerContextKey<>("AwsMetricsAttempts");
+
+    private static final RequestHandler2 REQUEST_HANDLER = new RequestHandler2() {
+        @Override
+        public void beforeAttempt(HandlerBeforeAttemptContext context) {
+            final MetricsListener current = listener;
+            if (current == null) {
+                return;
+            }
+            final Request<?> request = context.getRequest();
+            final Integer attempts = request.getHandlerContext(ATTEMPTS);
+            if (attempts != null) {
+                current.onRetry(request.getServiceName());
+            }
+            request.addHandlerContext(ATTEMPTS, attempts == null ? 1 : attempts + 1);
+        }
+
+        @Override
+        public void afterAttempt(HandlerAfterAttemptContext context) {
+            final MetricsListener current = listener;
+            if (current != null && context.getException() instanceof SdkBaseException
+                    && RetryUtils.isThrottlingException((SdkBaseException) context.getException())) {
+                current.onThrottle(context.getRequest().getServiceName());
+            }
+        }
+    };
+
+    private static volatile MetricsListener listener;
+
+    private AwsMetrics() {
+    }
+
+    /**
+     * Installs the listener, null turns metrics off.
+     *
+     * @param metricsListener the metrics listener
+     */
+    public static void setListener(final MetricsListener metricsListener) {
+        listener = metricsListener;
+    }
+
+    /**
+     * Gets the installed listener.
+     *
+     * @return the listener, null if metrics are off
+     */
+    public static MetricsListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Whether a listener is installed. Call sites use it to skip computing payload sizes.
+     *
+     * @return the boolean
+     */
+    public static boolean isEnabled() {
+        return listener != null;
+    }
+
+    /**
+     * Request handler reporting retries and throttles of the client it is registered on.
+     *
+     * @return the request handler
+     */
+    public static RequestHandler2 requestHandler() {
+        return REQUEST_HANDLER;
+    }
+
+    /**
+     * Start timestamp of an operation.
+     *
+     * @return the start timestamp, 0 if metrics are off
+     */
+    public static long start() {
+        return listener == null ? 0L : System.nanoTime();
+    }
+
+    /**
+     * Records an operation started with {@link #start()}.
+     *
+     * @param operation the operation
+     * @param start     the start timestamp
+     * @param bytes     the payload bytes, 0 if unknown
+     * @param success   whether the operation succeeded
+     */
+    public static void record(final Operation operation, final long start, final long bytes, final boolean success) {
+        final MetricsListener current = listener;
+        if (current != null && start != 0L) {
+            current.onOperation(operation, System.nanoTime() - start, bytes, success);
+        }
+    }
+
+    /**
+     * Number of bytes of the UTF-8 encoding of a string, computed without encoding it.
+     *
+     * @param value the value
+     * @return the byte count
+     */
+    public static long utf8Length(final CharSequence value) {
+        if (value == null) {
+            return 0L;
+        }
+        long bytes = 0L;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
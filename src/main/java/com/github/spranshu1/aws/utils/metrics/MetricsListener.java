@@ -0,0 +1,51 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.metrics;
+
+/**
+ * Receives the measurements of the helpers. Implementations are called on the hot path of every
+ * instrumented call, so they must be thread safe, cheap and should not allocate.
+ *
+ * @see AwsMetrics#setListener(MetricsListener)
+ */
+public interface MetricsListener {
+
+    /**
+     * Called once per helper operation.
+     *
+     * @param operation    the operation
+     * @param latencyNanos the latency in nanoseconds
+     * @param bytes        the payload bytes sent or received, 0 if unknown
+     * @param success      whether the operation completed without exception
+     */
+    void onOperation(Operation operation, long latencyNanos, long bytes, boolean success);
+
+    /**
+     * Called when the AWS client retries a request.
+     *
+     * @param serviceName the AWS service name, e.g. "Amazon S3"
+     */
+    void onRetry(String serviceName);
+
+    /**
+     * Called when an AWS request attempt is throttled.
+     *
+     * @param serviceName the AWS service name, e.g. "Amazon S3"
+     */
+    void onThrottle(String serviceName);
+}
@@ -0,0 +1,159 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.metrics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory {@link MetricsListener} keeping per-operation counters and latency histograms, and
+ * retry/throttle counts per AWS service. Read it periodically to bridge into a metrics stack.
+ */
+public class MetricsRegistry implements MetricsListener {
+
+    private final OperationMetrics[] operations;
+    private final ConcurrentMap<String, LongAdder> retries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> throttles = new ConcurrentHashMap<>();
+
+    /**
+     * Instantiates a new metrics registry.
+     */
+    public MetricsRegistry() {
+        operations = new OperationMetrics[Operation.values().length];
+        for (Operation operation : Operation.values()) {
+            operations[operation.ordinal()] = new OperationMetrics();
+        }
+    }
+
+    @Override
+    public void onOperation(final Operation operation, final long latencyNanos, final long bytes, final boolean success) {
+        operations[operation.ordinal()].record(latencyNanos, bytes, success);
+    }
+
+    @Override
+    public void onRetry(final String serviceName) {
+        counter(retries, serviceName).increment();
+    }
+
+    @Override
+    public void onThrottle(final String serviceName) {
+        counter(throttles, serviceName).increment();
+    }
+
+    /**
+     * Gets the metrics of an operation.
+     *
+     * @param operation the operation
+     * @return the operation metrics
+     */
+    public OperationMetrics getOperationMetrics(final Operation operation) {
+        return operations[operation.ordinal()];
+    }
+
+    /**
+     * Retry counts per AWS service.
+     *
+     * @return service name to retries
+     */
+    public Map<String, Long> getRetries() {
+        return totals(retries);
+    }
+
+    /**
+     * Throttle counts per AWS service.
+     *
+     * @return service name to throttles
+     */
+    public Map<String, Long> getThrottles() {
+        return totals(throttles);
+    }
+
+    private static LongAdder counter(final ConcurrentMap<String, LongAdder> counters, final String serviceName) {
+        final LongAdder counter = counters.get(serviceName);
+        return counter != null ? counter : counters.computeIfAbsent(serviceName, k -> new LongAdder());
+    }
+
+    private static Map<String, Long> totals(final ConcurrentMap<String, LongAdder> counters) {
+        final Map<String, Long> totals = new HashMap<>();
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            totals.put(counter.getKey(), counter.getValue().sum());
+        }
+        return Collections.unmodifiableMap(totals);
+    }
+
+    /**
+     * Counters and latency of one operation.
+     */
+    public static class OperationMetrics {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        void record(final long latencyNanos, final long payloadBytes, final boolean success) {
+            calls.increment();
+            if (!success) {
+                errors.increment();
+            }
+            if (payloadBytes > 0) {
+                bytes.add(payloadBytes);
+            }
+            latency.record(latencyNanos);
+        }
+
+        /**
+         * Gets calls.
+         *
+         * @return the calls
+         */
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        /**
+         * Gets failed calls.
+         *
+         * @return the errors
+         */
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        /**
+         * Gets bytes transferred.
+         *
+         * @return the bytes
+         */
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        /**
+         * Gets latency histogram.
+         *
+         * @return the latency
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+    }
+}
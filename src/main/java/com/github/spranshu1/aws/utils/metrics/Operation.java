@@ -0,0 +1,70 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.metrics;
+
+/**
+ * Operations instrumented by the helpers.
+ */
+public enum Operation {
+    /** SQS SendMessage */
+    SQS_SEND,
+    /** SQS SendMessageBatch */
+    SQS_SEND_BATCH,
+    /** SQS ReceiveMessage */
+    SQS_RECEIVE,
+    /** SQS DeleteMessage */
+    SQS_DELETE,
+    /** SQS DeleteMessageBatch */
+    SQS_DELETE_BATCH,
+    /** SQS ChangeMessageVisibility */
+    SQS_CHANGE_VISIBILITY,
+    /** SQS ChangeMessageVisibilityBatch */
+    SQS_CHANGE_VISIBILITY_BATCH,
+    /** S3 object or file upload */
+    S3_UPLOAD,
+    /** S3 object or file download */
+    S3_DOWNLOAD,
+    /** S3 ListObjects */
+    S3_LIST,
+    /** S3 HeadObject */
+    S3_HEAD,
+    /** S3 DeleteObject and DeleteObjects */
+    S3_DELETE,
+    /** S3 CreateBucket */
+    S3_CREATE_BUCKET,
+    /** S3 ListBuckets */
+    S3_LIST_BUCKETS,
+    /** S3 DeleteBucket, including emptying it */
+    S3_DELETE_BUCKET,
+    /** IAM ListAccountAliases */
+    IAM_LIST_ACCOUNT_ALIASES,
+    /** IAM GetRole */
+    IAM_GET_ROLE,
+    /** IAM GetInstanceProfile */
+    IAM_GET_INSTANCE_PROFILE,
+    /** IAM ListInstanceProfiles, one call per page */
+    IAM_LIST_INSTANCE_PROFILES,
+    /** IAM ListPolicies, one call per page */
+    IAM_LIST_POLICIES,
+    /** IAM ListAttachedRolePolicies, one call per page */
+    IAM_LIST_ATTACHED_ROLE_POLICIES,
+    /** IAM ListServerCertificates, one call per page */
+    IAM_LIST_SERVER_CERTIFICATES,
+    /** IAM GetAccountAuthorizationDetails, one call per page */
+    IAM_GET_ACCOUNT_AUTHORIZATION_DETAILS
+}
@@ -26,14 +26,26 @@ import com.amazonaws.services.s3.transfer.Download;
 import com.amazonaws.services.s3.transfer.TransferManager;
 import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
 import com.amazonaws.services.s3.transfer.Upload;
+import com.github.spranshu1.aws.utils.concurrent.BlockingExecutors;
+import com.github.spranshu1.aws.utils.concurrent.ExecutionMode;
+import com.github.spranshu1.aws.utils.metrics.AwsMetrics;
+import com.github.spranshu1.aws.utils.metrics.Operation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Instance for operating on one bucket with a particular bucketName
@@ -43,9 +55,14 @@ public class S3BucketHelper {
     private static final Logger LOGGER = LoggerFactory.getLogger(S3BucketHelper.class);
 
 
+    /** Concurrency of the transfer manager default executor. */
+    private static final int DEFAULT_CONCURRENCY = 10;
+
     private String bucketName;
     private TransferManager transferManager;
     private AmazonS3 s3client;
+    private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+    private int maxConcurrency = DEFAULT_CONCURRENCY;
 
     /**
      * Instantiates a new S3 bucket.
@@ -69,11 +86,31 @@ public class S3BucketHelper {
      * @param threadPoolSize the thread pool size
      */
     public S3BucketHelper(final String bucketName, final AmazonS3 s3client, final int threadPoolSize) {
+        this(bucketName, s3client, threadPoolSize, ExecutionMode.PLATFORM);
+    }
+
+    /**
+     * Instantiates a new S3 bucket whose transfers and HEAD fan-outs run at most 'maxConcurrency'
+     * requests at a time, on platform or virtual threads. Transfers use a fixed pool of 'maxConcurrency'
+     * threads rather than a semaphore, because the transfer manager runs tasks that wait on the parts
+     * submitted to the same executor. Virtual threads are daemon threads: wait for asynchronous uploads
+     * before the JVM exits.
+     *
+     * @param bucketName     the bucket name
+     * @param s3client       the s3 client
+     * @param maxConcurrency the max concurrency
+     * @param executionMode  the execution mode
+     */
+    public S3BucketHelper(final String bucketName, final AmazonS3 s3client, final int maxConcurrency,
+                          final ExecutionMode executionMode) {
         this.bucketName = bucketName;
         this.s3client = s3client;
+        this.executionMode = executionMode;
+        this.maxConcurrency = maxConcurrency;
         transferManager = TransferManagerBuilder.standard()
                         .withS3Client(s3client)
-                        .withExecutorFactory(() -> Executors.newFixedThreadPool(threadPoolSize))
+                        .withExecutorFactory(() -> Executors.newFixedThreadPool(maxConcurrency,
+                                BlockingExecutors.newThreadFactory(executionMode, "s3-transfer-worker", false)))
                         .build();
     }
 
@@ -94,10 +131,13 @@ public class S3BucketHelper {
      * @throws Exception the exception
      */
     public void uploadObject(InputStream objectStream, String key) throws Exception {
+        final long start = AwsMetrics.start();
         try {
             Upload uploadObject = transferManager.upload(bucketName, key, objectStream, new ObjectMetadata());
             uploadObject.waitForCompletion();
+            AwsMetrics.record(Operation.S3_UPLOAD, start, uploadObject.getProgress().getBytesTransferred(), true);
         } catch (Exception ex) {
+            AwsMetrics.record(Operation.S3_UPLOAD, start, 0L, false);
             LOGGER.error("Uploading of object could not be completed due to exception {}", ex.getMessage());
             throw ex;
         }
@@ -112,12 +152,15 @@ public class S3BucketHelper {
      * @throws Exception the exception
      */
     public void uploadObject(InputStream objectStream, long contentLength, String key) throws Exception {
+        final long start = AwsMetrics.start();
         try {
             ObjectMetadata metaData = new ObjectMetadata();
             metaData.setContentLength(contentLength);
             Upload uploadObject = transferManager.upload(bucketName, key, objectStream, metaData);
             uploadObject.waitForCompletion();
+            AwsMetrics.record(Operation.S3_UPLOAD, start, contentLength, true);
         } catch (Exception e) {
+            AwsMetrics.record(Operation.S3_UPLOAD, start, 0L, false);
             LOGGER.error("Uploading of object could not be completed due to exception {}", e.getMessage());
             throw e;
         }
@@ -132,12 +175,15 @@ public class S3BucketHelper {
      */
     public List<String> listObjects(String prefix) throws Exception {
         List<String> matchingKeys = new ArrayList<>();
+        final long start = AwsMetrics.start();
         try {
             ObjectListing objects = s3client.listObjects(bucketName, prefix);
             for (S3ObjectSummary objectSummary : objects.getObjectSummaries()) {
                 matchingKeys.add(objectSummary.getKey());
             }
+            AwsMetrics.record(Operation.S3_LIST, start, 0L, true);
         } catch (Exception e) {
+            AwsMetrics.record(Operation.S3_LIST, start, 0L, false);
             LOGGER.error("Objects could not be listed due to exception {}", e.getMessage());
             throw e;
         }
@@ -152,17 +198,58 @@ public class S3BucketHelper {
      * @return key exists
      */
     public boolean checkKeyExists(String key) {
+        final long start = AwsMetrics.start();
         try {
             s3client.getObjectMetadata(bucketName, key);
+            AwsMetrics.record(Operation.S3_HEAD, start, 0L, true);
             return true;
         } catch (AmazonServiceException e) {
-            LOGGER.error("Objects could not be listed due to exception {}", e.getMessage());
+            // a 404 is an answer, not a failure
+            AwsMetrics.record(Operation.S3_HEAD, start, 0L, 404 == e.getStatusCode());
             if (404 == e.getStatusCode())
                 return false;
+            LOGGER.error("Objects could not be listed due to exception {}", e.getMessage());
             throw e;
         }
     }
 
+    /**
+     * Checks whether the input keys exist in the instance bucket, sending the HEAD requests
+     * concurrently (see {@link #checkKeyExists(String)}).
+     *
+     * @param keys the keys
+     * @return key exists, by key in input order
+     */
+    public Map<String, Boolean> checkKeysExist(Collection<String> keys) {
+        final Set<String> uniqueKeys = new LinkedHashSet<>(keys);
+        final Map<String, Boolean> results = new LinkedHashMap<>();
+        if (uniqueKeys.isEmpty()) {
+            return results;
+        }
+        final ExecutorService executor = BlockingExecutors.newExecutor(executionMode,
+                Math.min(maxConcurrency, uniqueKeys.size()), "s3-head", true);
+        try {
+            final Map<String, Future<Boolean>> futures = new LinkedHashMap<>();
+            for (String key : uniqueKeys) {
+                futures.put(key, executor.submit(() -> checkKeyExists(key)));
+            }
+            for (Map.Entry<String, Future<Boolean>> future : futures.entrySet()) {
+                results.put(future.getKey(), future.getValue().get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Key check was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * Download any object from the 'bucketName'
      *
@@ -171,10 +258,14 @@ public class S3BucketHelper {
      * @throws Exception the exception
      */
     public S3ObjectInputStream downloadObject(String key) throws Exception {
+        final long start = AwsMetrics.start();
         try {
             S3Object downloadedObj = s3client.getObject(bucketName, key);
+            // measures time to first byte; the content is streamed by the caller
+            AwsMetrics.record(Operation.S3_DOWNLOAD, start, downloadedObj.getObjectMetadata().getContentLength(), true);
             return downloadedObj.getObjectContent();
         } catch (Exception e) {
+            AwsMetrics.record(Operation.S3_DOWNLOAD, start, 0L, false);
             LOGGER.error("Downloading of object could not be completed due to exception {}", e.getMessage());
             throw e;
         }
@@ -188,10 +279,13 @@ public class S3BucketHelper {
      * @throws Exception the exception
      */
     public void downloadFile(File file, String key) throws Exception {
+        final long start = AwsMetrics.start();
         Download downloadedObj = transferManager.download(bucketName, key, file);
         try {
             downloadedObj.waitForCompletion();
+            AwsMetrics.record(Operation.S3_DOWNLOAD, start, downloadedObj.getProgress().getBytesTransferred(), true);
         } catch (Exception e) {
+            AwsMetrics.record(Operation.S3_DOWNLOAD, start, 0L, false);
             LOGGER.error("Downloading of file could not be completed due to exception {}", e.getMessage());
             throw e;
         }
@@ -206,12 +300,33 @@ public class S3BucketHelper {
      * @throws Exception the exception
      */
     public void uploadFile(File file, String key, boolean asyncUpload) throws Exception {
+        final long start = AwsMetrics.start();
         try {
-            Upload uploadObject = transferManager.upload(bucketName, key, file);
+            final PutObjectRequest request = new PutObjectRequest(bucketName, key, file);
+            if (asyncUpload && AwsMetrics.isEnabled()) {
+                // nobody waits for the upload, record it when the transfer reports its outcome
+                final long length = file.length();
+                request.setGeneralProgressListener(event -> {
+                    switch (event.getEventType()) {
+                        case TRANSFER_COMPLETED_EVENT:
+                            AwsMetrics.record(Operation.S3_UPLOAD, start, length, true);
+                            break;
+                        case TRANSFER_FAILED_EVENT:
+                        case TRANSFER_CANCELED_EVENT:
+                            AwsMetrics.record(Operation.S3_UPLOAD, start, 0L, false);
+                            break;
+                        default:
+                            break;
+                    }
+                });
+            }
+            Upload uploadObject = transferManager.upload(request);
             if (!asyncUpload) {
                 uploadObject.waitForCompletion();
+                AwsMetrics.record(Operation.S3_UPLOAD, start, file.length(), true);
             }
         } catch (Exception e) {
+            AwsMetrics.record(Operation.S3_UPLOAD, start, 0L, false);
             LOGGER.error("Uploading of object could not be completed due to exception {}", e.getMessage());
             throw e;
         }
@@ -224,9 +339,12 @@ public class S3BucketHelper {
      * @throws Exception the exception
      */
     public void deleteObject(String key) throws Exception {
+        final long start = AwsMetrics.start();
         try {
             s3client.deleteObject(bucketName, key);
+            AwsMetrics.record(Operation.S3_DELETE, start, 0L, true);
         } catch (Exception e) {
+            AwsMetrics.record(Operation.S3_DELETE, start, 0L, false);
             LOGGER.error("Object could not be deleted due to the exception {}", e.getMessage());
             throw e;
         }
@@ -246,9 +364,12 @@ public class S3BucketHelper {
 
         DeleteObjectsRequest delObjects = new DeleteObjectsRequest(bucketName);
         delObjects.setKeys(Keys);
+        final long start = AwsMetrics.start();
         try {
             s3client.deleteObjects(delObjects);
+            AwsMetrics.record(Operation.S3_DELETE, start, 0L, true);
         } catch (Exception e) {
+            AwsMetrics.record(Operation.S3_DELETE, start, 0L, false);
             LOGGER.error("Some objects could not be deleted due to the exception {}", e.getMessage());
             throw e;
         }
@@ -260,4 +381,14 @@ public class S3BucketHelper {
     public void close() {
         transferManager.shutdownNow();
     }
+
+    /**
+     * Close the transfer manager, optionally leaving the s3 client open
+     * (e.g. when it is shared through {@link com.github.spranshu1.aws.utils.client.AwsClientRegistry}).
+     *
+     * @param shutDownS3Client whether the s3 client is shut down as well
+     */
+    public void close(final boolean shutDownS3Client) {
+        transferManager.shutdownNow(shutDownS3Client);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,515 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.s3;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.event.S3EventNotification;
+import com.amazonaws.services.s3.event.S3EventNotification.S3EventNotificationRecord;
+import com.amazonaws.services.s3.event.S3EventNotification.S3ObjectEntity;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.DeleteMessageRequest;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.util.json.Jackson;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.spranshu1.aws.utils.concurrent.BlockingExecutors;
+import com.github.spranshu1.aws.utils.concurrent.ExecutionMode;
+import com.github.spranshu1.aws.utils.metrics.AwsMetrics;
+import com.github.spranshu1.aws.utils.metrics.Operation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Consumes S3 event notifications from an SQS queue and hands the referenced objects to a {@link S3ObjectHandler}.
+ * <p>
+ * Pollers keep long-polling while a bounded pool fetches and handles the records of earlier messages, so
+ * polling, fetching and processing overlap. A message may carry several records; it is deleted only after
+ * all of them were handled, otherwise it is left for redelivery. Records are deduplicated on bucket, key and
+ * ETag: a record already handled (or being handled) is not fetched again, so a redelivered message only
+ * retries the records that failed. Test events and events other than ObjectCreated are acknowledged without
+ * a fetch; notifications delivered through SNS are unwrapped.
+ * <p>
+ * Objects are fetched at the version id of the event, or else on the condition that the ETag still matches;
+ * an object overwritten or deleted since the event is skipped, its newer event will follow.
+ * The queue visibility timeout must cover fetching and handling all the records of a message.
+ */
+public class S3EventPipeline implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(S3EventPipeline.class);
+
+    private static final int MAX_MESSAGES = 10;
+    private static final String OBJECT_CREATED = "ObjectCreated:";
+
+    private final AmazonSQS sqs;
+    private final String queueUrl;
+    private final AmazonS3 s3;
+    private final S3ObjectHandler handler;
+    private final int pollers;
+    private final int waitTimeSeconds;
+    private final Semaphore inFlightMessages;
+    private final ExecutorService pollerExecutor;
+    private final ExecutorService fetchExecutor;
+    private final ConcurrentMap<String, CompletableFuture<Void>> inFlightRecords = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> handledRecords;
+    private final LongAdder handled = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder deletedMessages = new LongAdder();
+    private volatile boolean running;
+
+    private S3EventPipeline(final Builder builder) {
+        this.sqs = builder.sqs;
+        this.queueUrl = builder.queueUrl;
+        this.s3 = builder.s3;
+        this.handler = builder.handler;
+        this.pollers = builder.pollers;
+        this.waitTimeSeconds = builder.waitTimeSeconds;
+        this.inFlightMessages = new Semaphore(builder.maxInFlightMessages);
+        this.pollerExecutor = Executors.newFixedThreadPool(builder.pollers,
+                BlockingExecutors.newThreadFactory(builder.executionMode, "s3-event-poller", true));
+        this.fetchExecutor = BlockingExecutors.newExecutor(builder.executionMode, builder.fetchParallelism,
+                "s3-event-fetcher", true);
+        final int dedupeCapacity = builder.dedupeCapacity;
+        this.handledRecords = Collections.synchronizedMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+                return size() > dedupeCapacity;
+            }
+        });
+    }
+
+    /**
+     * New builder consuming the notifications of 'queueUrl'.
+     *
+     * @param sqs      the sqs
+     * @param queueUrl the queue url
+     * @param s3       the s3 client
+     * @param handler  the handler
+     * @return the builder
+     */
+    public static Builder builder(final AmazonSQS sqs, final String queueUrl, final AmazonS3 s3,
+                                  final S3ObjectHandler handler) {
+        return new Builder(sqs, queueUrl, s3, handler);
+    }
+
+    /**
+     * Starts polling.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < pollers; i++) {
+            pollerExecutor.execute(this::poll);
+        }
+    }
+
+    /**
+     * Stops polling and waits up to 'timeout' for the messages in flight to finish.
+     *
+     * @param timeout the timeout
+     * @param unit    the unit
+     * @return true if every message in flight finished
+     * @throws InterruptedException the interrupted exception
+     */
+    public boolean stop(final long timeout, final TimeUnit unit) throws InterruptedException {
+        running = false;
+        pollerExecutor.shutdownNow();
+        pollerExecutor.awaitTermination(timeout, unit);
+        fetchExecutor.shutdown();
+        return fetchExecutor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Stops polling, waiting up to 30 seconds for the messages in flight.
+     */
+    @Override
+    public void close() {
+        try {
+            if (!stop(30, TimeUnit.SECONDS)) {
+                fetchExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fetchExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Records handled successfully.
+     *
+     * @return the handled count
+     */
+    public long getHandledRecords() {
+        return handled.sum();
+    }
+
+    /**
+     * Records skipped as already handled or being handled.
+     *
+     * @return the duplicate count
+     */
+    public long getDuplicateRecords() {
+        return duplicates.sum();
+    }
+
+    /**
+     * Records whose fetch or handler failed.
+     *
+     * @return the failed count
+     */
+    public long getFailedRecords() {
+        return failed.sum();
+    }
+
+    /**
+     * Messages deleted after all their records succeeded.
+     *
+     * @return the deleted count
+     */
+    public long getDeletedMessages() {
+        return deletedMessages.sum();
+    }
+
+    private void poll() {
+        while (running) {
+            try {
+                // never receive more messages than there is room for, each message keeps its permit until done
+                inFlightMessages.acquire(MAX_MESSAGES);
+                final List<Message> messages;
+                try {
+                    messages = receive();
+                } catch (RuntimeException e) {
+                    inFlightMessages.release(MAX_MESSAGES);
+                    throw e;
+                }
+                inFlightMessages.release(MAX_MESSAGES - messages.size());
+                for (Message message : messages) {
+                    dispatch(message);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                LOGGER.error("Event notifications could not be received due to exception {}", e.getMessage());
+                sleepBeforeRetry();
+            }
+        }
+    }
+
+    private void dispatch(final Message message) {
+        final List<S3EventNotificationRecord> records;
+        try {
+            records = parse(message.getBody());
+        } catch (RuntimeException e) {
+            // left in the queue, the redrive policy moves it to the dead-letter queue
+            LOGGER.error("Message {} is not an S3 event notification: {}", message.getMessageId(), e.getMessage());
+            inFlightMessages.release();
+            return;
+        }
+        final List<CompletableFuture<Void>> results = new ArrayList<>(records.size());
+        for (S3EventNotificationRecord record : records) {
+            if (record.getEventName() != null && record.getEventName().startsWith(OBJECT_CREATED)) {
+                results.add(process(record));
+            }
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).whenComplete((ignored, error) -> {
+            try {
+                if (error == null) {
+                    delete(message);
+                } else {
+                    LOGGER.warn("Message {} is left for redelivery, a record failed: {}", message.getMessageId(),
+                            error.getMessage());
+                }
+            } finally {
+                inFlightMessages.release();
+            }
+        });
+    }
+
+    private CompletableFuture<Void> process(final S3EventNotificationRecord record) {
+        final String dedupeKey = dedupeKey(record);
+        if (dedupeKey != null && handledRecords.containsKey(dedupeKey)) {
+            duplicates.increment();
+            return CompletableFuture.completedFuture(null);
+        }
+        final CompletableFuture<Void> mine = new CompletableFuture<>();
+        if (dedupeKey != null) {
+            final CompletableFuture<Void> running = inFlightRecords.putIfAbsent(dedupeKey, mine);
+            if (running != null) {
+                duplicates.increment();
+                return running;
+            }
+        }
+        try {
+            fetchExecutor.execute(() -> {
+                try {
+                    fetchAndHandle(record);
+                    if (dedupeKey != null) {
+                        handledRecords.put(dedupeKey, Boolean.TRUE);
+                    }
+                    handled.increment();
+                    mine.complete(null);
+                } catch (Exception e) {
+                    failed.increment();
+                    LOGGER.error("Object {} could not be processed due to exception {}",
+                            record.getS3().getObject().getUrlDecodedKey(), e.getMessage());
+                    mine.completeExceptionally(e);
+                } finally {
+                    if (dedupeKey != null) {
+                        inFlightRecords.remove(dedupeKey, mine);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // rejected while stopping
+            if (dedupeKey != null) {
+                inFlightRecords.remove(dedupeKey, mine);
+            }
+            mine.completeExceptionally(e);
+        }
+        return mine;
+    }
+
+    private void fetchAndHandle(final S3EventNotificationRecord record) throws Exception {
+        final String bucketName = record.getS3().getBucket().getName();
+        final S3ObjectEntity entity = record.getS3().getObject();
+        final GetObjectRequest request = new GetObjectRequest(bucketName, entity.getUrlDecodedKey());
+        if (entity.getVersionId() != null) {
+            request.setVersionId(entity.getVersionId());
+        } else if (entity.geteTag() != null) {
+            request.withMatchingETagConstraint(entity.geteTag());
+        }
+        final S3Object object = fetch(request);
+        if (object == null) {
+            LOGGER.debug("Object {} changed since the event, skipped", request.getKey());
+            return;
+        }
+        try (S3Object content = object) {
+            handler.handle(record, content);
+        }
+    }
+
+    private S3Object fetch(final GetObjectRequest request) {
+        final long start = AwsMetrics.start();
+        boolean success = false;
+        S3Object object = null;
+        try {
+            object = s3.getObject(request);
+            success = true;
+            return object;
+        } catch (com.amazonaws.AmazonServiceException e) {
+            if (e.getStatusCode() == 404 && request.getVersionId() == null) {
+                // deleted since the event, a removal event follows
+                success = true;
+                return null;
+            }
+            throw e;
+        } finally {
+            // measures time to first byte; the content is streamed by the handler
+            AwsMetrics.record(Operation.S3_DOWNLOAD, start,
+                    object != null ? object.getObjectMetadata().getContentLength() : 0L, success);
+        }
+    }
+
+    private List<Message> receive() {
+        final ReceiveMessageRequest request = new ReceiveMessageRequest(queueUrl)
+                .withMaxNumberOfMessages(MAX_MESSAGES)
+                .withWaitTimeSeconds(waitTimeSeconds);
+        final long start = AwsMetrics.start();
+        List<Message> messages = null;
+        try {
+            messages = sqs.receiveMessage(request).getMessages();
+            return messages;
+        } finally {
+            AwsMetrics.record(Operation.SQS_RECEIVE, start, 0L, messages != null);
+        }
+    }
+
+    private void delete(final Message message) {
+        final long start = AwsMetrics.start();
+        boolean success = false;
+        try {
+            sqs.deleteMessage(new DeleteMessageRequest(queueUrl, message.getReceiptHandle()));
+            deletedMessages.increment();
+            success = true;
+        } catch (RuntimeException e) {
+            // handled records are deduplicated when the message comes back
+            LOGGER.error("Message {} could not be deleted due to exception {}", message.getMessageId(), e.getMessage());
+        } finally {
+            AwsMetrics.record(Operation.SQS_DELETE, start, 0L, success);
+        }
+    }
+
+    /**
+     * Parses the records of a notification, unwrapping an SNS envelope. A test event has no records.
+     *
+     * @param body the message body
+     * @return the records
+     */
+    static List<S3EventNotificationRecord> parse(final String body) {
+        JsonNode node = Jackson.jsonNodeOf(body);
+        if (node.has("Type") && node.has("Message")) {
+            node = Jackson.jsonNodeOf(node.get("Message").asText());
+        }
+        if (!node.has("Records")) {
+            if ("s3:TestEvent".equals(node.path("Event").asText())) {
+                return Collections.emptyList();
+            }
+            throw new IllegalArgumentException("no Records in message body");
+        }
+        final List<S3EventNotificationRecord> records = S3EventNotification.parseJson(node.toString()).getRecords();
+        return records != null ? records : Collections.<S3EventNotificationRecord>emptyList();
+    }
+
+    private static String dedupeKey(final S3EventNotificationRecord record) {
+        final S3ObjectEntity entity = record.getS3().getObject();
+        final String version = entity.geteTag() != null ? entity.geteTag() : entity.getVersionId();
+        return version == null ? null : record.getS3().getBucket().getName() + '/' + entity.getKey() + '@' + version;
+    }
+
+    private void sleepBeforeRetry() {
+        try {
+            TimeUnit.SECONDS.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    /**
+     * Builder for {@link S3EventPipeline}.
+     */
+    public static final class Builder {
+        private final AmazonSQS sqs;
+        private final String queueUrl;
+        private final AmazonS3 s3;
+        private final S3ObjectHandler handler;
+        private int pollers = 1;
+        private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+        private int waitTimeSeconds = 20;
+        private int fetchParallelism = 16;
+        private int maxInFlightMessages = 100;
+        private int dedupeCapacity = 100000;
+
+        private Builder(final AmazonSQS sqs, final String queueUrl, final AmazonS3 s3, final S3ObjectHandler handler) {
+            this.sqs = sqs;
+            this.queueUrl = queueUrl;
+            this.s3 = s3;
+            this.handler = handler;
+        }
+
+        /**
+         * Number of threads long-polling the queue, 1 by default.
+         *
+         * @param pollers the pollers
+         * @return the builder
+         */
+        public Builder pollers(final int pollers) {
+            this.pollers = pollers;
+            return this;
+        }
+
+        /**
+         * Whether pollers and fetches run on platform threads (the default) or on virtual threads, see
+         * {@link BlockingExecutors}. With virtual threads, thousands of pollers cost little memory.
+         *
+         * @param executionMode the execution mode
+         * @return the builder
+         */
+        public Builder executionMode(final ExecutionMode executionMode) {
+            this.executionMode = executionMode;
+            return this;
+        }
+
+        /**
+         * Long poll wait of each receive, 20 seconds by default.
+         *
+         * @param waitTimeSeconds the wait time seconds
+         * @return the builder
+         */
+        public Builder waitTimeSeconds(final int waitTimeSeconds) {
+            this.waitTimeSeconds = waitTimeSeconds;
+            return this;
+        }
+
+        /**
+         * Number of objects fetched and handled at the same time, 16 by default.
+         *
+         * @param fetchParallelism the fetch parallelism
+         * @return the builder
+         */
+        public Builder fetchParallelism(final int fetchParallelism) {
+            this.fetchParallelism = fetchParallelism;
+            return this;
+        }
+
+        /**
+         * Maximum number of received messages not yet finished; polling pauses at the limit. 100 by default,
+         * at least 10.
+         *
+         * @param maxInFlightMessages the max in flight messages
+         * @return the builder
+         */
+        public Builder maxInFlightMessages(final int maxInFlightMessages) {
+            this.maxInFlightMessages = Math.max(MAX_MESSAGES, maxInFlightMessages);
+            return this;
+        }
+
+        /**
+         * Number of handled records remembered for deduplication, 100000 by default.
+         *
+         * @param dedupeCapacity the dedupe capacity
+         * @return the builder
+         */
+        public Builder dedupeCapacity(final int dedupeCapacity) {
+            this.dedupeCapacity = dedupeCapacity;
+            return this;
+        }
+
+        /**
+         * Build s3 event pipeline.
+         *
+         * @return the s3 event pipeline
+         */
+        public S3EventPipeline build() {
+            return new S3EventPipeline(this);
+        }
+    }
+}
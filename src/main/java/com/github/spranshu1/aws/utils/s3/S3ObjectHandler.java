@@ -0,0 +1,38 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.s3;
+
+import com.amazonaws.services.s3.event.S3EventNotification.S3EventNotificationRecord;
+import com.amazonaws.services.s3.model.S3Object;
+
+/**
+ * Processes one object referenced by an S3 event notification, see {@link S3EventPipeline}.
+ */
+@FunctionalInterface
+public interface S3ObjectHandler {
+
+    /**
+     * Handles the object of an ObjectCreated event. The content stream is closed by the pipeline once the
+     * handler returns; throwing leaves the notification message in the queue to be delivered again.
+     *
+     * @param record the event record
+     * @param object the object, at the ETag or version id of the event
+     * @throws Exception the exception
+     */
+    void handle(S3EventNotificationRecord record, S3Object object) throws Exception;
+}
@@ -20,9 +20,14 @@ package com.github.spranshu1.aws.utils.s3;
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.s3.model.*;
+import com.github.spranshu1.aws.utils.client.AwsClientRegistry;
+import com.github.spranshu1.aws.utils.client.ClientSettings;
+import com.github.spranshu1.aws.utils.metrics.AwsMetrics;
+import com.github.spranshu1.aws.utils.metrics.Operation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,6 +52,7 @@ public class S3Service {
 
         s3client = AmazonS3ClientBuilder.standard()
                 .withCredentials(new AWSStaticCredentialsProvider(credentials))
+                .withRequestHandlers(AwsMetrics.requestHandler())
                 .build();
     }
 
@@ -60,9 +66,31 @@ public class S3Service {
         s3client = AmazonS3ClientBuilder.standard()
                 .withClientConfiguration(clientConfig)
                 .withCredentials(new AWSStaticCredentialsProvider(credentials))
+                .withRequestHandlers(AwsMetrics.requestHandler())
                 .build();
     }
 
+    /**
+     * Instantiates a new S3 service on the client shared through the default {@link AwsClientRegistry}.
+     * The shared client must not be shut down by the caller.
+     *
+     * @param credentials the credentials
+     * @param region      the region, null for the default region provider chain
+     * @param settings    the client settings
+     */
+    public S3Service(final BasicAWSCredentials credentials, final Regions region, final ClientSettings settings) {
+        this(AwsClientRegistry.getDefault().getS3Client(credentials, region, settings));
+    }
+
+    /**
+     * Instantiates a new S3 service on an existing client.
+     *
+     * @param s3client the s3 client
+     */
+    public S3Service(final AmazonS3 s3client) {
+        this.s3client = s3client;
+    }
+
     /**
      * Returns the S3 client
      *
@@ -78,9 +106,14 @@ public class S3Service {
      * @param bucketName the bucket name
      */
     public void createBucket(String bucketName) {
-
-        s3client.createBucket(bucketName);
-
+        final long start = AwsMetrics.start();
+        boolean success = false;
+        try {
+            s3client.createBucket(bucketName);
+            success = true;
+        } finally {
+            AwsMetrics.record(Operation.S3_CREATE_BUCKET, start, 0L, success);
+        }
     }
 
     /**
@@ -90,8 +123,15 @@ public class S3Service {
      */
     public List<String> listBuckets() {
         List<String> bucketNames = new ArrayList<>();
-        for (Bucket bucket : s3client.listBuckets()) {
-            bucketNames.add(bucket.getName());
+        final long start = AwsMetrics.start();
+        boolean success = false;
+        try {
+            for (Bucket bucket : s3client.listBuckets()) {
+                bucketNames.add(bucket.getName());
+            }
+            success = true;
+        } finally {
+            AwsMetrics.record(Operation.S3_LIST_BUCKETS, start, 0L, success);
         }
         return bucketNames;
     }
@@ -103,10 +143,13 @@ public class S3Service {
      * @throws Exception the exception
      */
     public void deleteBucket(String bucketName) throws Exception {
+        final long start = AwsMetrics.start();
         try {
             emptyBucket(bucketName);
             s3client.deleteBucket(bucketName);
+            AwsMetrics.record(Operation.S3_DELETE_BUCKET, start, 0L, true);
         } catch (Exception e) {
+            AwsMetrics.record(Operation.S3_DELETE_BUCKET, start, 0L, false);
             LOGGER.error("Bucket could not be deleted due to exception {}", e);
             throw e;
         }
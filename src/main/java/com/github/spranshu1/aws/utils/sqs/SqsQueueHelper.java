@@ -19,6 +19,8 @@ package com.github.spranshu1.aws.utils.sqs;
 
 import com.amazonaws.services.sqs.AmazonSQS;
 import com.amazonaws.services.sqs.model.*;
+import com.github.spranshu1.aws.utils.metrics.AwsMetrics;
+import com.github.spranshu1.aws.utils.metrics.Operation;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -63,7 +65,7 @@ public class SqsQueueHelper {
 	 */
 	public List<Message> receiveMessage() {
 		receiveReq = new ReceiveMessageRequest(queueUrl).withMaxNumberOfMessages(maxMessages);
-		return sqs.receiveMessage(receiveReq).getMessages();
+		return receive(receiveReq);
 	}
 
 	/**
@@ -75,7 +77,18 @@ public class SqsQueueHelper {
 	 */
 	public List<Message> receiveMessage(final int waitTimeSeconds) {
 		receiveReq = new ReceiveMessageRequest(queueUrl).withMaxNumberOfMessages(maxMessages).withWaitTimeSeconds(waitTimeSeconds);
-		return sqs.receiveMessage(receiveReq).getMessages();
+		return receive(receiveReq);
+	}
+
+	private List<Message> receive(final ReceiveMessageRequest request) {
+		final long start = AwsMetrics.start();
+		List<Message> messages = null;
+		try {
+			messages = sqs.receiveMessage(request).getMessages();
+			return messages;
+		} finally {
+			AwsMetrics.record(Operation.SQS_RECEIVE, start, start != 0L ? bodyBytes(messages) : 0L, messages != null);
+		}
 	}
 
 	/**
@@ -84,7 +97,7 @@ public class SqsQueueHelper {
 	 * @param message to be deleted
 	 */
 	public void deleteMessage(final Message message) {
-		sqs.deleteMessage(new DeleteMessageRequest(queueUrl, message.getReceiptHandle()));
+		deleteMessage(message.getReceiptHandle());
 	}
 
 	/**
@@ -93,7 +106,14 @@ public class SqsQueueHelper {
 	 * @param receiptHandle of the message to be deleted
 	 */
 	public void deleteMessage(final String receiptHandle) {
-		sqs.deleteMessage(new DeleteMessageRequest(queueUrl, receiptHandle));
+		final long start = AwsMetrics.start();
+		boolean success = false;
+		try {
+			sqs.deleteMessage(new DeleteMessageRequest(queueUrl, receiptHandle));
+			success = true;
+		} finally {
+			AwsMetrics.record(Operation.SQS_DELETE, start, 0L, success);
+		}
 	}
 
 	/**
@@ -103,7 +123,7 @@ public class SqsQueueHelper {
 	 * @return message id
 	 */
 	public String sendMessage(final String message) {
-		return sqs.sendMessage(new SendMessageRequest(queueUrl, message)).getMessageId();
+		return send(new SendMessageRequest(queueUrl, message));
 	}
 
 	/**
@@ -120,7 +140,14 @@ public class SqsQueueHelper {
 			for (Integer id = 0; id < 10 && (batch + id) < messages.size(); id++) {
 				entries.add(new SendMessageBatchRequestEntry(id.toString(), messages.get(batch + id)));
 			}
-			result.addAll(sqs.sendMessageBatch(queueUrl, entries).getFailed());
+			final long start = AwsMetrics.start();
+			boolean success = false;
+			try {
+				result.addAll(sqs.sendMessageBatch(queueUrl, entries).getFailed());
+				success = true;
+			} finally {
+				AwsMetrics.record(Operation.SQS_SEND_BATCH, start, start != 0L ? entryBytes(entries) : 0L, success);
+			}
 		}
 		return result;
 	}
@@ -132,7 +159,14 @@ public class SqsQueueHelper {
 	 * @param visibilityTimeout the visibility timeout
 	 */
 	public void changeMessageVisibilityTimeOut(final Message message, final int visibilityTimeout){
-		sqs.changeMessageVisibility(queueUrl, message.getReceiptHandle(), visibilityTimeout);
+		final long start = AwsMetrics.start();
+		boolean success = false;
+		try {
+			sqs.changeMessageVisibility(queueUrl, message.getReceiptHandle(), visibilityTimeout);
+			success = true;
+		} finally {
+			AwsMetrics.record(Operation.SQS_CHANGE_VISIBILITY, start, 0L, success);
+		}
 	}
 
 	/**
@@ -143,7 +177,19 @@ public class SqsQueueHelper {
 	 * @return messageId string
 	 */
 	public String sendMessageWithDelay(final String message, final Integer delaySeconds) {
-		return sqs.sendMessage(new SendMessageRequest(queueUrl, message).withDelaySeconds(delaySeconds)).getMessageId();
+		return send(new SendMessageRequest(queueUrl, message).withDelaySeconds(delaySeconds));
+	}
+
+	private String send(final SendMessageRequest request) {
+		final long start = AwsMetrics.start();
+		boolean success = false;
+		try {
+			final String messageId = sqs.sendMessage(request).getMessageId();
+			success = true;
+			return messageId;
+		} finally {
+			AwsMetrics.record(Operation.SQS_SEND, start, start != 0L ? AwsMetrics.utf8Length(request.getMessageBody()) : 0L, success);
+		}
 	}
 
 	/**
@@ -179,10 +225,29 @@ public class SqsQueueHelper {
 	}
 
 	/**
-	 * Shuts down the connection to Amazon SQS
+	 * Shuts down the connection to Amazon SQS.
+	 * Do not call this for a client shared through {@link com.github.spranshu1.aws.utils.client.AwsClientRegistry}.
 	 */
 	public void shutdown(){
 		sqs.shutdown();
 	}
 
+	private static long bodyBytes(final List<Message> messages) {
+		long bytes = 0L;
+		if (messages != null) {
+			for (Message message : messages) {
+				bytes += AwsMetrics.utf8Length(message.getBody());
+			}
+		}
+		return bytes;
+	}
+
+	private static long entryBytes(final List<SendMessageBatchRequestEntry> entries) {
+		long bytes = 0L;
+		for (SendMessageBatchRequestEntry entry : entries) {
+			bytes += AwsMetrics.utf8Length(entry.getMessageBody());
+		}
+		return bytes;
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,693 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.sqs;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.*;
+import com.github.spranshu1.aws.utils.concurrent.BlockingExecutors;
+import com.github.spranshu1.aws.utils.concurrent.ExecutionMode;
+import com.github.spranshu1.aws.utils.concurrent.TokenBucket;
+import com.github.spranshu1.aws.utils.metrics.AwsMetrics;
+import com.github.spranshu1.aws.utils.metrics.Operation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * Moves messages from one queue to another, typically to redrive a dead-letter queue back to its source.
+ * <p>
+ * Parallel receivers long-poll the source, send what they received to the target in batches and delete
+ * from the source, after each batch, only the messages whose send was confirmed. A message is therefore
+ * never lost; it can be duplicated only when its delete fails after the send, as with any SQS consumer.
+ * Messages that failed to send are made visible again after a visibility timeout that doubles with every
+ * attempt and retried, up to {@link Builder#maxSendAttempts(int)} attempts; messages SQS rejected as the
+ * sender's fault, and messages out of attempts, stay in the source untouched.
+ * <p>
+ * A mover runs until every receiver got several empty receives in a row once the messages waiting for a
+ * retry are visible again (receives with only skipped or rejected messages count as empty), the message limit is reached or {@link #stop()} is called. A mover
+ * moves once; build a new one for the next run.
+ */
+public class SqsQueueMover {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SqsQueueMover.class);
+
+    private static final int MAX_BATCH_ENTRIES = 10;
+    private static final int MAX_BATCH_BYTES = 262144;
+    private static final String ALL = "All";
+    private static final String AWS_TRACE_HEADER = "AWSTraceHeader";
+    private static final String FIFO_SUFFIX = ".fifo";
+    private static final int MAX_RETRY_VISIBILITY_SECONDS = 30;
+
+    private final AmazonSQS sqs;
+    private final String sourceQueueUrl;
+    private final String targetQueueUrl;
+    private final int receivers;
+    private final ExecutionMode executionMode;
+    private final int waitTimeSeconds;
+    private final Integer visibilityTimeout;
+    private final long maxMessages;
+    private final boolean preserveAttributes;
+    private final UnaryOperator<Message> transform;
+    private final int maxEmptyReceives;
+    private final int maxSendAttempts;
+    private final boolean fifoTarget;
+    private final TokenBucket limiter;
+    private final Set<String> leftInSource = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<String, Integer> failedSendAttempts = new ConcurrentHashMap<>();
+    /** Time by which every message scheduled for a retry is visible again, in epoch millis */
+    private final AtomicLong retriesVisibleAt = new AtomicLong();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean stopped;
+
+    private SqsQueueMover(final Builder builder) {
+        this.sqs = builder.sqs;
+        this.sourceQueueUrl = builder.sourceQueueUrl;
+        this.targetQueueUrl = builder.targetQueueUrl;
+        this.receivers = builder.receivers;
+        this.executionMode = builder.executionMode;
+        this.waitTimeSeconds = builder.waitTimeSeconds;
+        this.visibilityTimeout = builder.visibilityTimeout;
+        this.maxMessages = builder.maxMessages;
+        this.preserveAttributes = builder.preserveAttributes;
+        this.transform = builder.transform;
+        this.maxEmptyReceives = builder.maxEmptyReceives;
+        this.maxSendAttempts = builder.maxSendAttempts;
+        this.fifoTarget = builder.targetQueueUrl.endsWith(FIFO_SUFFIX);
+        this.limiter = builder.messagesPerSecond > 0
+                ? new TokenBucket(builder.messagesPerSecond, (int) Math.max(MAX_BATCH_ENTRIES, builder.messagesPerSecond))
+                : null;
+    }
+
+    /**
+     * New builder moving messages from 'sourceQueueUrl' to 'targetQueueUrl'.
+     *
+     * @param sqs            the sqs
+     * @param sourceQueueUrl the source queue url
+     * @param targetQueueUrl the target queue url
+     * @return the builder
+     */
+    public static Builder builder(final AmazonSQS sqs, final String sourceQueueUrl, final String targetQueueUrl) {
+        return new Builder(sqs, sourceQueueUrl, targetQueueUrl);
+    }
+
+    /**
+     * Moves messages until the source is drained, the message limit is reached or the mover is stopped.
+     * The first receive, send or delete error stops every receiver and is rethrown; messages in flight at
+     * that point stay in the source.
+     *
+     * @return the move result
+     * @throws IllegalStateException if the mover already moved
+     */
+    public Result move() {
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("SqsQueueMover can only move once");
+        }
+        final long startedAt = System.currentTimeMillis();
+        final Counters counters = new Counters();
+        final AtomicLong budget = new AtomicLong(maxMessages > 0 ? maxMessages : Long.MAX_VALUE);
+        final ExecutorService executor = BlockingExecutors.newExecutor(executionMode, receivers,
+                "sqs-mover-receiver", false);
+        try {
+            final List<Future<?>> futures = new ArrayList<>(receivers);
+            for (int i = 0; i < receivers; i++) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        runReceiver(budget, counters);
+                    } catch (RuntimeException e) {
+                        stopped = true;
+                        throw e;
+                    }
+                    return null;
+                }));
+            }
+            RuntimeException failure = null;
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    stopped = true;
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException
+                                ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Move was interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        final Result result = new Result(counters, System.currentTimeMillis() - startedAt);
+        LOGGER.info("Moved {} of {} received messages from {} to {} in {} ms", result.getMoved(), result.getReceived(),
+                sourceQueueUrl, targetQueueUrl, result.getElapsedMillis());
+        return result;
+    }
+
+    /**
+     * Stops the receivers after their current batch.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    private void runReceiver(final AtomicLong budget, final Counters counters) throws InterruptedException {
+        int emptyReceives = 0;
+        while (!stopped) {
+            final int max = reserve(budget);
+            if (max == 0) {
+                return;
+            }
+            if (limiter != null) {
+                // wait for the tokens before receiving, not while the received messages' visibility runs out
+                limiter.acquire(max);
+            }
+            final List<Message> messages = receive(max);
+            final List<Message> fresh = new ArrayList<>(messages.size());
+            for (Message message : messages) {
+                if (!leftInSource.contains(message.getMessageId())) {
+                    fresh.add(message);
+                }
+            }
+            budget.addAndGet(max - fresh.size());
+            final int sent = fresh.isEmpty() ? 0 : moveBatch(fresh, counters);
+            if (limiter != null && sent < max) {
+                limiter.release(max - sent);
+            }
+            if (!fresh.isEmpty() || System.currentTimeMillis() < retriesVisibleAt.get()) {
+                // messages waiting for a retry are not visible yet, the source is not drained
+                emptyReceives = 0;
+            } else if (++emptyReceives >= maxEmptyReceives) {
+                // drained, apart from messages this run decided to leave behind
+                return;
+            }
+        }
+    }
+
+    private int reserve(final AtomicLong budget) {
+        while (true) {
+            final long available = budget.get();
+            if (available <= 0) {
+                return 0;
+            }
+            final int max = (int) Math.min(MAX_BATCH_ENTRIES, available);
+            if (budget.compareAndSet(available, available - max)) {
+                return max;
+            }
+        }
+    }
+
+    /**
+     * Sends 'messages' to the target and deletes the sent ones from the source, returning the number of
+     * messages sent.
+     */
+    private int moveBatch(final List<Message> messages, final Counters counters) {
+        counters.received.add(messages.size());
+        final Map<String, Message> originalsById = new HashMap<>();
+        final List<SendMessageBatchRequestEntry> entries = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            final Message original = messages.get(i);
+            // the hook gets a copy so it cannot change the receipt handle used for the delete
+            final Message outgoing = transform == null ? original : transform.apply(original.clone());
+            if (outgoing == null) {
+                leftInSource.add(original.getMessageId());
+                counters.skipped.increment();
+                continue;
+            }
+            final String id = Integer.toString(i);
+            originalsById.put(id, original);
+            entries.add(toEntry(id, outgoing));
+        }
+        for (List<SendMessageBatchRequestEntry> chunk : splitBySize(entries)) {
+            final SendMessageBatchResult result = send(chunk);
+            final List<DeleteMessageBatchRequestEntry> deletes = new ArrayList<>(result.getSuccessful().size());
+            for (SendMessageBatchResultEntry sent : result.getSuccessful()) {
+                final Message original = originalsById.get(sent.getId());
+                failedSendAttempts.remove(original.getMessageId());
+                deletes.add(new DeleteMessageBatchRequestEntry(sent.getId(), original.getReceiptHandle()));
+            }
+            final List<ChangeMessageVisibilityBatchRequestEntry> retries = new ArrayList<>();
+            for (BatchResultErrorEntry failed : result.getFailed()) {
+                final Message original = originalsById.get(failed.getId());
+                counters.sendFailures.increment();
+                final int attempts = failedSendAttempts.merge(original.getMessageId(), 1, Integer::sum);
+                if (Boolean.TRUE.equals(failed.getSenderFault()) || attempts >= maxSendAttempts) {
+                    // retrying would be rejected again, or has been often enough
+                    leftInSource.add(original.getMessageId());
+                    failedSendAttempts.remove(original.getMessageId());
+                } else {
+                    retries.add(new ChangeMessageVisibilityBatchRequestEntry(failed.getId(), original.getReceiptHandle())
+                            .withVisibilityTimeout(retryVisibilitySeconds(attempts)));
+                }
+                LOGGER.warn("Message {} could not be sent to {}: {} {}", original.getMessageId(),
+                        targetQueueUrl, failed.getCode(), failed.getMessage());
+            }
+            // delete what this chunk sent before the next chunk can fail
+            if (!deletes.isEmpty()) {
+                deleteConfirmed(deletes, counters);
+            }
+            if (!retries.isEmpty()) {
+                retryLater(retries);
+            }
+        }
+        return entries.size();
+    }
+
+    private void deleteConfirmed(final List<DeleteMessageBatchRequestEntry> deletes, final Counters counters) {
+        List<BatchResultErrorEntry> failed = delete(deletes).getFailed();
+        if (!failed.isEmpty()) {
+            // deletes are idempotent, give the failed entries one more chance before they turn into duplicates
+            final Map<String, DeleteMessageBatchRequestEntry> byId = new HashMap<>();
+            for (DeleteMessageBatchRequestEntry entry : deletes) {
+                byId.put(entry.getId(), entry);
+            }
+            final List<DeleteMessageBatchRequestEntry> retry = new ArrayList<>(failed.size());
+            for (BatchResultErrorEntry entry : failed) {
+                retry.add(byId.get(entry.getId()));
+            }
+            failed = delete(retry).getFailed();
+            for (BatchResultErrorEntry entry : failed) {
+                LOGGER.warn("Moved message could not be deleted from {} and will be delivered again: {} {}",
+                        sourceQueueUrl, entry.getCode(), entry.getMessage());
+            }
+        }
+        counters.moved.add(deletes.size() - failed.size());
+        counters.deleteFailures.add(failed.size());
+    }
+
+    private static int retryVisibilitySeconds(final int attempts) {
+        // 1, 2, 4... seconds, so a failing target is not retried in a tight loop
+        return Math.min(MAX_RETRY_VISIBILITY_SECONDS, 1 << Math.min(attempts - 1, 5));
+    }
+
+    private void retryLater(final List<ChangeMessageVisibilityBatchRequestEntry> entries) {
+        int maxSeconds = 0;
+        for (ChangeMessageVisibilityBatchRequestEntry entry : entries) {
+            maxSeconds = Math.max(maxSeconds, entry.getVisibilityTimeout());
+        }
+        final long visibleAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(maxSeconds);
+        retriesVisibleAt.accumulateAndGet(visibleAt, Math::max);
+        final long start = AwsMetrics.start();
+        boolean success = false;
+        try {
+            final ChangeMessageVisibilityBatchResult result = sqs.changeMessageVisibilityBatch(
+                    new ChangeMessageVisibilityBatchRequest(sourceQueueUrl, entries));
+            success = true;
+            for (BatchResultErrorEntry entry : result.getFailed()) {
+                LOGGER.debug("Message that failed to send stays hidden until its visibility timeout: {} {}",
+                        entry.getCode(), entry.getMessage());
+            }
+        } catch (AmazonClientException e) {
+            // only delays the retry until the visibility timeout expires
+            LOGGER.debug("Messages that failed to send stay hidden until their visibility timeout: {}", e.getMessage());
+        } finally {
+            AwsMetrics.record(Operation.SQS_CHANGE_VISIBILITY_BATCH, start, 0L, success);
+        }
+    }
+
+    private SendMessageBatchRequestEntry toEntry(final String id, final Message message) {
+        final SendMessageBatchRequestEntry entry = new SendMessageBatchRequestEntry(id, message.getBody());
+        final Map<String, String> attributes = message.getAttributes();
+        if (fifoTarget) {
+            // a FIFO queue rejects messages without a group id, whatever preserveAttributes says
+            entry.setMessageGroupId(attributes.get(MessageSystemAttributeName.MessageGroupId.toString()));
+            entry.setMessageDeduplicationId(attributes.get(MessageSystemAttributeName.MessageDeduplicationId.toString()));
+        }
+        if (!preserveAttributes) {
+            return entry;
+        }
+        if (!message.getMessageAttributes().isEmpty()) {
+            entry.setMessageAttributes(message.getMessageAttributes());
+        }
+        final String traceHeader = attributes.get(AWS_TRACE_HEADER);
+        if (traceHeader != null) {
+            entry.addMessageSystemAttributesEntry(AWS_TRACE_HEADER,
+                    new MessageSystemAttributeValue().withDataType("String").withStringValue(traceHeader));
+        }
+        return entry;
+    }
+
+    private static List<List<SendMessageBatchRequestEntry>> splitBySize(final List<SendMessageBatchRequestEntry> entries) {
+        final List<List<SendMessageBatchRequestEntry>> chunks = new ArrayList<>();
+        List<SendMessageBatchRequestEntry> chunk = new ArrayList<>();
+        long chunkBytes = 0;
+        for (SendMessageBatchRequestEntry entry : entries) {
+            final long bytes = entryBytes(entry);
+            if (!chunk.isEmpty() && chunkBytes + bytes > MAX_BATCH_BYTES) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                chunkBytes = 0;
+            }
+            chunk.add(entry);
+            chunkBytes += bytes;
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private static long entryBytes(final SendMessageBatchRequestEntry entry) {
+        long bytes = AwsMetrics.utf8Length(entry.getMessageBody());
+        if (entry.getMessageAttributes() != null) {
+            for (Map.Entry<String, MessageAttributeValue> attribute : entry.getMessageAttributes().entrySet()) {
+                final MessageAttributeValue value = attribute.getValue();
+                bytes += AwsMetrics.utf8Length(attribute.getKey()) + AwsMetrics.utf8Length(value.getDataType());
+                bytes += value.getStringValue() != null ? AwsMetrics.utf8Length(value.getStringValue()) : 0L;
+                bytes += value.getBinaryValue() != null ? value.getBinaryValue().remaining() : 0L;
+            }
+        }
+        return bytes;
+    }
+
+    private List<Message> receive(final int max) {
+        final ReceiveMessageRequest request = new ReceiveMessageRequest(sourceQueueUrl)
+                .withMaxNumberOfMessages(max)
+                .withWaitTimeSeconds(waitTimeSeconds)
+                .withVisibilityTimeout(visibilityTimeout);
+        if (preserveAttributes) {
+            request.withMessageAttributeNames(ALL).withAttributeNames(ALL);
+        } else if (fifoTarget) {
+            request.withAttributeNames(MessageSystemAttributeName.MessageGroupId.toString(),
+                    MessageSystemAttributeName.MessageDeduplicationId.toString());
+        }
+        final long start = AwsMetrics.start();
+        List<Message> messages = null;
+        try {
+            messages = sqs.receiveMessage(request).getMessages();
+            return messages;
+        } finally {
+            AwsMetrics.record(Operation.SQS_RECEIVE, start, 0L, messages != null);
+        }
+    }
+
+    private SendMessageBatchResult send(final List<SendMessageBatchRequestEntry> entries) {
+        final long start = AwsMetrics.start();
+        boolean success = false;
+        try {
+            final SendMessageBatchResult result = sqs.sendMessageBatch(
+                    new SendMessageBatchRequest(targetQueueUrl).withEntries(entries));
+            success = true;
+            return result;
+        } finally {
+            AwsMetrics.record(Operation.SQS_SEND_BATCH, start, 0L, success);
+        }
+    }
+
+    private DeleteMessageBatchResult delete(final List<DeleteMessageBatchRequestEntry> entries) {
+        final long start = AwsMetrics.start();
+        boolean success = false;
+        try {
+            final DeleteMessageBatchResult result = sqs.deleteMessageBatch(
+                    new DeleteMessageBatchRequest(sourceQueueUrl).withEntries(entries));
+            success = true;
+            return result;
+        } finally {
+            AwsMetrics.record(Operation.SQS_DELETE_BATCH, start, 0L, success);
+        }
+    }
+
+    private static final class Counters {
+        private final LongAdder received = new LongAdder();
+        private final LongAdder moved = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder sendFailures = new LongAdder();
+        private final LongAdder deleteFailures = new LongAdder();
+    }
+
+    /**
+     * Outcome of {@link #move()}.
+     */
+    public static final class Result {
+        private final long received;
+        private final long moved;
+        private final long skipped;
+        private final long sendFailures;
+        private final long deleteFailures;
+        private final long elapsedMillis;
+
+        private Result(final Counters counters, final long elapsedMillis) {
+            this.received = counters.received.sum();
+            this.moved = counters.moved.sum();
+            this.skipped = counters.skipped.sum();
+            this.sendFailures = counters.sendFailures.sum();
+            this.deleteFailures = counters.deleteFailures.sum();
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * Messages received from the source, including redeliveries of messages whose send failed.
+         *
+         * @return the received count
+         */
+        public long getReceived() {
+            return received;
+        }
+
+        /**
+         * Messages sent to the target and deleted from the source.
+         *
+         * @return the moved count
+         */
+        public long getMoved() {
+            return moved;
+        }
+
+        /**
+         * Messages the transform left in the source.
+         *
+         * @return the skipped count
+         */
+        public long getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * Failed send attempts; the messages were retried or stayed in the source.
+         *
+         * @return the send failure count
+         */
+        public long getSendFailures() {
+            return sendFailures;
+        }
+
+        /**
+         * Messages sent to the target that could not be deleted from the source and will be delivered again.
+         *
+         * @return the delete failure count
+         */
+        public long getDeleteFailures() {
+            return deleteFailures;
+        }
+
+        /**
+         * Duration of the move.
+         *
+         * @return the elapsed millis
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{received=" + received + ", moved=" + moved + ", skipped=" + skipped
+                    + ", sendFailures=" + sendFailures + ", deleteFailures=" + deleteFailures
+                    + ", elapsedMillis=" + elapsedMillis + '}';
+        }
+    }
+
+    /**
+     * Builder for {@link SqsQueueMover}.
+     */
+    public static final class Builder {
+        private final AmazonSQS sqs;
+        private final String sourceQueueUrl;
+        private final String targetQueueUrl;
+        private int receivers = 8;
+        private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+        private int waitTimeSeconds = 2;
+        private Integer visibilityTimeout;
+        private long maxMessages;
+        private double messagesPerSecond;
+        private boolean preserveAttributes = true;
+        private UnaryOperator<Message> transform;
+        private int maxEmptyReceives = 3;
+        private int maxSendAttempts = 4;
+
+        private Builder(final AmazonSQS sqs, final String sourceQueueUrl, final String targetQueueUrl) {
+            this.sqs = sqs;
+            this.sourceQueueUrl = sourceQueueUrl;
+            this.targetQueueUrl = targetQueueUrl;
+        }
+
+        /**
+         * Number of parallel receivers, 8 by default. Size the client connection pool to match.
+         *
+         * @param receivers the receivers
+         * @return the builder
+         */
+        public Builder receivers(final int receivers) {
+            if (receivers <= 0) {
+                throw new IllegalArgumentException("receivers must be positive");
+            }
+            this.receivers = receivers;
+            return this;
+        }
+
+        /**
+         * Whether receivers run on platform threads (the default) or on virtual threads, see
+         * {@link BlockingExecutors}.
+         *
+         * @param executionMode the execution mode
+         * @return the builder
+         */
+        public Builder executionMode(final ExecutionMode executionMode) {
+            this.executionMode = executionMode;
+            return this;
+        }
+
+        /**
+         * Long poll wait of each receive, 2 seconds by default.
+         *
+         * @param waitTimeSeconds the wait time seconds
+         * @return the builder
+         */
+        public Builder waitTimeSeconds(final int waitTimeSeconds) {
+            this.waitTimeSeconds = waitTimeSeconds;
+            return this;
+        }
+
+        /**
+         * Number of empty receives in a row after which a receiver considers the source drained, 3 by default.
+         * A receive counts as empty when it returns no message or only messages this run leaves in the source.
+         *
+         * @param maxEmptyReceives the max empty receives
+         * @return the builder
+         */
+        public Builder maxEmptyReceives(final int maxEmptyReceives) {
+            if (maxEmptyReceives <= 0) {
+                throw new IllegalArgumentException("maxEmptyReceives must be positive");
+            }
+            this.maxEmptyReceives = maxEmptyReceives;
+            return this;
+        }
+
+        /**
+         * Number of times a message is sent before it is left in the source, 4 by default. Between attempts
+         * the message stays hidden for 1, 2, 4... seconds (at most 30). Messages SQS rejects as the sender's
+         * fault are never retried.
+         *
+         * @param maxSendAttempts the max send attempts
+         * @return the builder
+         */
+        public Builder maxSendAttempts(final int maxSendAttempts) {
+            if (maxSendAttempts <= 0) {
+                throw new IllegalArgumentException("maxSendAttempts must be positive");
+            }
+            this.maxSendAttempts = maxSendAttempts;
+            return this;
+        }
+
+        /**
+         * Visibility timeout of received messages, the source queue default if not set. Messages left behind
+         * by a failed move become visible again after it.
+         *
+         * @param visibilityTimeout the visibility timeout in seconds
+         * @return the builder
+         */
+        public Builder visibilityTimeout(final int visibilityTimeout) {
+            this.visibilityTimeout = visibilityTimeout;
+            return this;
+        }
+
+        /**
+         * Maximum number of messages to receive, unlimited by default.
+         *
+         * @param maxMessages the max messages
+         * @return the builder
+         */
+        public Builder maxMessages(final long maxMessages) {
+            this.maxMessages = maxMessages;
+            return this;
+        }
+
+        /**
+         * Maximum number of messages sent per second across all receivers, unlimited by default.
+         *
+         * @param messagesPerSecond the messages per second
+         * @return the builder
+         */
+        public Builder messagesPerSecond(final double messagesPerSecond) {
+            this.messagesPerSecond = messagesPerSecond;
+            return this;
+        }
+
+        /**
+         * Whether message attributes and the X-Ray trace header are copied to the target, true by default.
+         * The group and deduplication ids are always copied when the target is a FIFO queue.
+         *
+         * @param preserveAttributes the preserve attributes
+         * @return the builder
+         */
+        public Builder preserveAttributes(final boolean preserveAttributes) {
+            this.preserveAttributes = preserveAttributes;
+            return this;
+        }
+
+        /**
+         * Hook applied to every received message before it is sent. It returns the message to send, possibly
+         * modified, or null to leave the message in the source queue.
+         *
+         * @param transform the transform
+         * @return the builder
+         */
+        public Builder transform(final UnaryOperator<Message> transform) {
+            this.transform = transform;
+            return this;
+        }
+
+        /**
+         * Build sqs queue mover.
+         *
+         * @return the sqs queue mover
+         */
+        public SqsQueueMover build() {
+            return new SqsQueueMover(this);
+        }
+    }
+}
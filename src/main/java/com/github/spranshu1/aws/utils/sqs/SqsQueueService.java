@@ -19,12 +19,16 @@ package com.github.spranshu1.aws.utils.sqs;
 
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.regions.Regions;
 import com.amazonaws.services.sqs.AmazonSQS;
 import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
 import com.amazonaws.services.sqs.model.CreateQueueRequest;
 import com.amazonaws.services.sqs.model.GetQueueUrlRequest;
 import com.amazonaws.services.sqs.model.GetQueueUrlResult;
 import com.amazonaws.services.sqs.model.QueueDoesNotExistException;
+import com.github.spranshu1.aws.utils.client.AwsClientRegistry;
+import com.github.spranshu1.aws.utils.client.ClientSettings;
+import com.github.spranshu1.aws.utils.metrics.AwsMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,9 +51,31 @@ public class SqsQueueService {
     public SqsQueueService(final BasicAWSCredentials credentials) {
         this.sqs = AmazonSQSClientBuilder.standard()
                 .withCredentials(new AWSStaticCredentialsProvider(credentials))
+                .withRequestHandlers(AwsMetrics.requestHandler())
                 .build();
     }
 
+    /**
+     * Instantiates a new Sqs queue service on the client shared through the default {@link AwsClientRegistry}.
+     * The shared client must not be shut down by the caller.
+     *
+     * @param credentials the credentials
+     * @param region      the region, null for the default region provider chain
+     * @param settings    the client settings
+     */
+    public SqsQueueService(final BasicAWSCredentials credentials, final Regions region, final ClientSettings settings) {
+        this(AwsClientRegistry.getDefault().getSqsClient(credentials, region, settings));
+    }
+
+    /**
+     * Instantiates a new Sqs queue service on an existing client.
+     *
+     * @param sqs the sqs client
+     */
+    public SqsQueueService(final AmazonSQS sqs) {
+        this.sqs = sqs;
+    }
+
     /**
      * Create a new queue with 'queueName'
      *
@@ -0,0 +1,78 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.client;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.auth.BasicSessionCredentials;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.s3.AmazonS3;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class AwsClientRegistryTest {
+
+    private final AwsClientRegistry registry = new AwsClientRegistry();
+    private final ClientSettings settings = ClientSettings.defaults();
+
+    @After
+    public void tearDown() {
+        registry.shutdown();
+    }
+
+    @Test
+    public void sameCredentialsShareOneClient() {
+        final AmazonS3 first = registry.getS3Client(new BasicAWSCredentials("key", "secret"), Regions.US_EAST_1, settings);
+        assertSame(first, registry.getS3Client(new BasicAWSCredentials("key", "secret"), Regions.US_EAST_1, settings));
+        assertNotSame(first, registry.getS3Client(new BasicAWSCredentials("other", "secret"), Regions.US_EAST_1, settings));
+        assertNotSame(first, registry.getS3Client(new BasicAWSCredentials("key", "secret"), Regions.EU_WEST_1, settings));
+    }
+
+    @Test
+    public void refreshedSessionTokenReusesClient() {
+        final AmazonS3 first = registry.getS3Client(new BasicSessionCredentials("key", "secret", "token-1"),
+                Regions.US_EAST_1, settings);
+        final AmazonS3 second = registry.getS3Client(new BasicSessionCredentials("key", "secret", "token-2"),
+                Regions.US_EAST_1, settings);
+        assertSame(first, second);
+    }
+
+    @Test
+    public void providersAreKeyedByInstance() {
+        final AWSCredentialsProvider provider = new AWSStaticCredentialsProvider(new BasicAWSCredentials("key", "secret"));
+        final AmazonS3 first = registry.getS3Client(provider, Regions.US_EAST_1, settings);
+        assertSame(first, registry.getS3Client(provider, Regions.US_EAST_1, settings));
+        assertNotSame(first, registry.getS3Client(
+                new AWSStaticCredentialsProvider(new BasicAWSCredentials("key", "secret")), Regions.US_EAST_1, settings));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shutDownRegistryHandsOutNoClient() {
+        registry.shutdown();
+        registry.getSqsClient(new BasicAWSCredentials("key", "secret"), Regions.US_EAST_1, settings);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void defaultRegistryCannotBeShutDown() {
+        AwsClientRegistry.getDefault().shutdown();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BlockingExecutorsTest {
+
+    private static final boolean JAVA_21 = featureVersion() >= 21;
+
+    @Test
+    public void virtualThreadsAreSupportedFromJava21() {
+        assertEquals(JAVA_21, BlockingExecutors.isVirtualThreadsSupported());
+        assertEquals(ExecutionMode.PLATFORM, BlockingExecutors.effectiveMode(ExecutionMode.PLATFORM));
+        assertEquals(JAVA_21 ? ExecutionMode.VIRTUAL : ExecutionMode.PLATFORM,
+                BlockingExecutors.effectiveMode(ExecutionMode.VIRTUAL));
+    }
+
+    @Test
+    public void virtualModeRunsOnVirtualThreadsOrFallsBack() throws Exception {
+        final ExecutorService executor = BlockingExecutors.newExecutor(ExecutionMode.VIRTUAL, 2, "worker", false);
+        try {
+            final Thread thread = executor.submit(Thread::currentThread).get(5, TimeUnit.SECONDS);
+            assertEquals(JAVA_21, isVirtual(thread));
+            assertTrue(thread.getName(), thread.getName().startsWith("worker-"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void platformThreadFactoryHonoursDaemonFlag() {
+        final ThreadFactory daemons = BlockingExecutors.newThreadFactory(ExecutionMode.PLATFORM, "poller", true);
+        final Thread first = daemons.newThread(() -> { });
+        assertEquals("poller-1", first.getName());
+        assertTrue(first.isDaemon());
+        assertEquals("poller-2", daemons.newThread(() -> { }).getName());
+
+        final Thread user = BlockingExecutors.newThreadFactory(ExecutionMode.PLATFORM, "poller", false)
+                .newThread(() -> { });
+        assertFalse(user.isDaemon());
+        assertFalse(isVirtual(user));
+        assertEquals(JAVA_21, isVirtual(BlockingExecutors.newThreadFactory(ExecutionMode.VIRTUAL, "poller", false)
+                .newThread(() -> { })));
+    }
+
+    @Test
+    public void executorsRunAtMostMaxConcurrencyTasks() throws Exception {
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            final ExecutorService executor = BlockingExecutors.newExecutor(mode, 3, "bounded", true);
+            final AtomicInteger running = new AtomicInteger();
+            final AtomicInteger maxRunning = new AtomicInteger();
+            try {
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < 12; i++) {
+                    futures.add(executor.submit(() -> {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        try {
+                            TimeUnit.MILLISECONDS.sleep(20);
+                        } finally {
+                            running.decrementAndGet();
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get(5, TimeUnit.SECONDS);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            assertTrue(mode + " ran " + maxRunning.get(), maxRunning.get() <= 3);
+            assertTrue(mode + " ran " + maxRunning.get(), maxRunning.get() > 1);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxConcurrencyMustBePositive() {
+        BlockingExecutors.newExecutor(ExecutionMode.PLATFORM, 0, "none", true);
+    }
+
+    private static boolean isVirtual(final Thread thread) {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (NoSuchMethodException e) {
+            return false;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int featureVersion() {
+        final String version = System.getProperty("java.specification.version");
+        return Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+    }
+}
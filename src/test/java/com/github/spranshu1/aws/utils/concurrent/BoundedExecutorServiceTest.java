@@ -0,0 +1,95 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.concurrent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BoundedExecutorServiceTest {
+
+    private ExecutorService delegate;
+    private BoundedExecutorService executor;
+
+    @Before
+    public void setUp() {
+        delegate = Executors.newCachedThreadPool();
+        executor = new BoundedExecutorService(delegate, 1);
+    }
+
+    @After
+    public void tearDown() {
+        delegate.shutdownNow();
+    }
+
+    @Test
+    public void failedTaskReleasesItsPermit() throws Exception {
+        final Future<?> failed = executor.submit(() -> {
+            throw new IllegalStateException("boom");
+        });
+        try {
+            failed.get(5, TimeUnit.SECONDS);
+            fail("task did not fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        // with a single permit, this only runs if the failed task gave it back
+        assertEquals("next", executor.submit(() -> "next").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void waitingTaskIsCancelledOnShutdownNow() throws Exception {
+        final CountDownLatch holding = new CountDownLatch(1);
+        final Future<?> holder = executor.submit(() -> {
+            holding.countDown();
+            TimeUnit.MINUTES.sleep(1);
+            return null;
+        });
+        holding.await(5, TimeUnit.SECONDS);
+        final Future<String> waiting = executor.submit(() -> "never");
+        // let the waiting task park on the semaphore
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        executor.shutdownNow();
+        try {
+            waiting.get(5, TimeUnit.SECONDS);
+            fail("waiting task ran after shutdownNow");
+        } catch (CancellationException e) {
+            assertTrue(waiting.isCancelled());
+        }
+        try {
+            holder.get(5, TimeUnit.SECONDS);
+            fail("running task was not interrupted");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof InterruptedException);
+        }
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+}
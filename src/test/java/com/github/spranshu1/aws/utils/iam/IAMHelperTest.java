@@ -0,0 +1,153 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.iam;
+
+import com.amazonaws.services.identitymanagement.model.AmazonIdentityManagementException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IAMHelperTest {
+
+    private StubIdentityManagement iam;
+    private IAMHelper helper;
+
+    @Before
+    public void setUp() {
+        iam = new StubIdentityManagement(2)
+                .addRole("web", "arn:aws:iam::aws:policy/p1", "arn:aws:iam::aws:policy/p2",
+                        "arn:aws:iam::aws:policy/p3", "arn:aws:iam::aws:policy/p4", "arn:aws:iam::aws:policy/p5")
+                .addRole("batch")
+                .addInstanceProfile("web-profile", "web");
+        helper = new IAMHelper(iam);
+    }
+
+    @Test
+    public void attachedPoliciesFollowEveryPage() {
+        assertEquals(Arrays.asList("arn:aws:iam::aws:policy/p1", "arn:aws:iam::aws:policy/p2",
+                "arn:aws:iam::aws:policy/p3", "arn:aws:iam::aws:policy/p4", "arn:aws:iam::aws:policy/p5"),
+                helper.getAttachedPoliciesArnsForRole("web"));
+        assertEquals(3, iam.calls("ListAttachedRolePolicies"));
+        assertEquals(Collections.emptyList(), helper.getAttachedPoliciesArnsForRole("missing"));
+    }
+
+    @Test
+    public void serverCertificateIsSearchedAcrossPages() {
+        for (int i = 0; i < 5; i++) {
+            iam.addServerCertificate("cert-" + i);
+        }
+        assertEquals(Optional.of("arn:aws:iam::123456789012:server-certificate/cert-4"),
+                helper.getServerCertificateArn("cert-4"));
+        assertEquals(3, iam.calls("ListServerCertificates"));
+
+        // stops at the page holding the certificate
+        assertEquals(Optional.of("arn:aws:iam::123456789012:server-certificate/cert-1"),
+                helper.getServerCertificateArn("cert-1"));
+        assertEquals(4, iam.calls("ListServerCertificates"));
+
+        assertEquals(Optional.empty(), helper.getServerCertificateArn("missing"));
+        assertEquals(7, iam.calls("ListServerCertificates"));
+    }
+
+    @Test
+    public void singleLookupsTreatAnyIamErrorAsAbsent() {
+        assertFalse(helper.hasRole("missing"));
+        iam.failure = StubIdentityManagement.serviceError("AccessDenied", 403);
+        assertEquals(Optional.empty(), helper.getRoleArn("web"));
+        assertFalse(helper.hasInstanceProfile("web-profile"));
+        assertEquals(Collections.emptyList(), helper.getAttachedPoliciesArnsForRole("web"));
+        assertEquals(Collections.emptyList(), helper.getInstanceProfileRoles("web-profile"));
+    }
+
+    @Test
+    public void bulkLookupsResolveInInputOrder() {
+        final Map<String, Optional<String>> arns = helper.getRoleArns(Arrays.asList("web", "missing", "batch", "web"));
+        assertEquals(Arrays.asList("web", "missing", "batch"), new ArrayList<>(arns.keySet()));
+        assertEquals(Optional.of("arn:aws:iam::123456789012:role/web"), arns.get("web"));
+        assertEquals(Optional.empty(), arns.get("missing"));
+        assertEquals(3, iam.calls("GetRole"));
+
+        final Map<String, Boolean> profiles = helper.hasInstanceProfiles(Arrays.asList("none", "web-profile"));
+        assertEquals(Arrays.asList("none", "web-profile"), new ArrayList<>(profiles.keySet()));
+        assertFalse(profiles.get("none"));
+        assertTrue(profiles.get("web-profile"));
+
+        final Map<String, List<String>> policies = helper.getAttachedPoliciesArnsForRoles(Arrays.asList("web", "batch", "missing"));
+        assertEquals(5, policies.get("web").size());
+        assertEquals(Collections.emptyList(), policies.get("batch"));
+        assertEquals(Collections.emptyList(), policies.get("missing"));
+        assertEquals(Collections.singletonMap("batch", true), helper.hasRoles(Collections.singleton("batch")));
+    }
+
+    @Test
+    public void bulkLookupsFailOnIamErrorsOtherThanMissing() {
+        final AmazonIdentityManagementException denied = StubIdentityManagement.serviceError("AccessDenied", 403);
+        iam.failure = denied;
+        try {
+            helper.getRoleArns(Arrays.asList("web", "batch"));
+            fail("access denied was reported as a missing role");
+        } catch (AmazonIdentityManagementException e) {
+            assertSame(denied, e);
+        }
+    }
+
+    @Test
+    public void bulkLimitsAreSharedAcrossConcurrentCalls() throws Exception {
+        iam.latencyMillis = 20;
+        helper.setBulkLookupLimits(2, 20);
+        final List<String> names = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            names.add("role-" + i);
+        }
+        final long start = System.nanoTime();
+        final CompletableFuture<Map<String, Boolean>> first = CompletableFuture.supplyAsync(() -> helper.hasRoles(names));
+        final CompletableFuture<Map<String, Boolean>> second = CompletableFuture.supplyAsync(() -> helper.hasRoles(names));
+        assertEquals(10, first.get(10, TimeUnit.SECONDS).size());
+        assertEquals(10, second.get(10, TimeUnit.SECONDS).size());
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(20, iam.calls("GetRole"));
+        assertTrue("max in flight " + iam.maxInFlight.get(), iam.maxInFlight.get() <= 2);
+        // a burst of 2, then 18 requests at 20 per second
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis >= 800);
+    }
+
+    @Test
+    public void snapshotAnswersBulkLookupsWithoutIam() {
+        final IAMHelper offline = IAMHelper.withSnapshot(iam, IamAccountSnapshot.capture(iam));
+        final int requests = iam.requestNanos.size();
+        assertEquals(Optional.of("arn:aws:iam::123456789012:role/batch"),
+                offline.getRoleArns(Arrays.asList("batch", "missing")).get("batch"));
+        assertEquals(5, offline.getAttachedPoliciesArnsForRoles(Collections.singleton("web")).get("web").size());
+        assertEquals(requests, iam.requestNanos.size());
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.iam;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IamAccountSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void captureSurvivesSaveAndLoad() throws IOException {
+        final StubIdentityManagement iam = new StubIdentityManagement(2)
+                .addRole("web", "arn:aws:iam::aws:policy/ReadOnlyAccess", "arn:aws:iam::123456789012:policy/app")
+                .addRole("batch", "arn:aws:iam::123456789012:policy/app")
+                .addRole("audit")
+                .addInstanceProfile("web-profile", "web")
+                .addInstanceProfile("empty-profile")
+                .addPolicy("app", false)
+                .addPolicy("ReadOnlyAccess", true)
+                .addPolicy("AdministratorAccess", true);
+
+        final IamAccountSnapshot captured = IamAccountSnapshot.capture(iam);
+        assertEquals(2, iam.calls("GetAccountAuthorizationDetails"));
+        assertEquals(Optional.of("arn:aws:iam::123456789012:instance-profile/empty-profile"),
+                captured.getInstanceProfileArn("empty-profile"));
+
+        final File file = folder.newFile("account.snapshot");
+        captured.save(file);
+        final IamAccountSnapshot loaded = IamAccountSnapshot.load(file);
+
+        assertEquals(captured.getCapturedAt(), loaded.getCapturedAt());
+        assertEquals(captured.getRoleNames(), loaded.getRoleNames());
+        assertEquals(Optional.of("arn:aws:iam::123456789012:role/batch"), loaded.getRoleArn("batch"));
+        assertEquals(Arrays.asList("arn:aws:iam::aws:policy/ReadOnlyAccess", "arn:aws:iam::123456789012:policy/app"),
+                loaded.getAttachedPoliciesArnsForRole("web"));
+        assertEquals(Collections.singletonList("web-inline"), loaded.getInlinePolicyNamesForRole("web"));
+        assertEquals(Collections.singletonList("web-profile"), loaded.getInstanceProfileNamesForRole("web"));
+        assertEquals(Collections.singletonList("web"), loaded.getInstanceProfileRoles("web-profile"));
+        assertEquals(Collections.emptyList(), loaded.getInstanceProfileRoles("empty-profile"));
+        assertEquals(Optional.of("arn:aws:iam::aws:policy/AdministratorAccess"),
+                loaded.getPolicyArn("AdministratorAccess"));
+        assertEquals(Arrays.asList("web", "batch"), loaded.getRolesForPolicy("arn:aws:iam::123456789012:policy/app"));
+        assertEquals(Optional.empty(), loaded.getRoleArn("missing"));
+    }
+
+    @Test
+    public void unknownFormatVersionIsRejected() throws IOException {
+        final File file = folder.newFile("future.snapshot");
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(2);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(0);
+        }
+        try {
+            IamAccountSnapshot.load(file);
+            fail("snapshot with an unknown format version was loaded");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("version 2"));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.iam;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PolicyIndexTest {
+
+    private static final int THREADS = 8;
+
+    private StubIdentityManagement iam;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        iam = new StubIdentityManagement(2);
+        for (int i = 0; i < 5; i++) {
+            iam.addPolicy("policy-" + i, false);
+        }
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentLookupsShareOneListing() throws Exception {
+        iam.latencyMillis = 50;
+        final PolicyIndex index = new PolicyIndex(iam, 1, TimeUnit.HOURS);
+
+        for (Future<Object> result : race(() -> index.getPolicyArn("policy-4"))) {
+            assertEquals(Optional.of("arn:aws:iam::123456789012:policy/policy-4"), result.get());
+        }
+        // 5 policies in pages of 2, listed once
+        assertEquals(3, iam.calls("ListPolicies"));
+        assertFalse(index.hasPolicy("missing"));
+        assertEquals(5, index.size());
+        assertEquals(3, iam.calls("ListPolicies"));
+    }
+
+    @Test
+    public void waitersAreReleasedWhenListingFails() throws Exception {
+        iam.latencyMillis = 50;
+        final RuntimeException failure = StubIdentityManagement.serviceError("Throttling", 400);
+        iam.failure = failure;
+        final PolicyIndex index = new PolicyIndex(iam, 1, TimeUnit.HOURS);
+
+        for (Future<Object> result : race(() -> index.getPolicyArn("policy-0"))) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail("lookup succeeded without a listing");
+            } catch (ExecutionException e) {
+                assertSame(failure, e.getCause());
+            }
+        }
+        iam.failure = null;
+        assertTrue(index.hasPolicy("policy-0"));
+    }
+
+    @Test
+    public void waitersAreReleasedWhenListingThrowsAnError() throws Exception {
+        iam.latencyMillis = 50;
+        iam.error = new AssertionError("listing blew up");
+        final PolicyIndex index = new PolicyIndex(iam, 1, TimeUnit.HOURS);
+
+        for (Future<Object> result : race(() -> index.getPolicyArn("policy-0"))) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail("lookup succeeded without a listing");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof AssertionError);
+            }
+        }
+    }
+
+    @Test
+    public void staleIndexIsRebuiltOnce() throws Exception {
+        final PolicyIndex index = new PolicyIndex(iam, 100, TimeUnit.MILLISECONDS);
+        assertTrue(index.hasPolicy("policy-0"));
+        assertEquals(3, iam.calls("ListPolicies"));
+
+        iam.addPolicy("policy-5", true);
+        assertFalse(index.hasPolicy("policy-5"));
+        TimeUnit.MILLISECONDS.sleep(150);
+
+        iam.latencyMillis = 20;
+        for (Future<Object> result : race(() -> index.hasPolicy("policy-5"))) {
+            assertEquals(Boolean.TRUE, result.get());
+        }
+        assertEquals(6, iam.calls("ListPolicies"));
+    }
+
+    @Test
+    public void backgroundRefreshServesStaleIndexWithinHardBound() throws Exception {
+        final PolicyIndex index = new PolicyIndex(iam, 200, TimeUnit.MILLISECONDS);
+        index.startBackgroundRefresh(1, TimeUnit.HOURS);
+        try {
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (iam.calls("ListPolicies") < 3 && System.currentTimeMillis() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            assertTrue(index.hasPolicy("policy-0"));
+            iam.failure = StubIdentityManagement.serviceError("ServiceFailure", 500);
+
+            // stale, but the background refresh is expected to replace it
+            TimeUnit.MILLISECONDS.sleep(250);
+            assertTrue(index.hasPolicy("policy-0"));
+            assertEquals(3, iam.calls("ListPolicies"));
+
+            // past twice the bound the lookup rebuilds itself and surfaces the failure
+            TimeUnit.MILLISECONDS.sleep(200);
+            try {
+                index.hasPolicy("policy-0");
+                fail("lookup answered from an index past the hard staleness bound");
+            } catch (RuntimeException e) {
+                assertSame(iam.failure, e);
+            }
+        } finally {
+            index.close();
+        }
+    }
+
+    private List<Future<Object>> race(final Callable<Object> lookup) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<Object>> results = new ArrayList<>(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return lookup.call();
+            }));
+        }
+        start.countDown();
+        return results;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.iam;
+
+import com.amazonaws.services.identitymanagement.AbstractAmazonIdentityManagement;
+import com.amazonaws.services.identitymanagement.model.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory IAM returning every listing in pages of 'pageSize', counting the calls per operation.
+ */
+class StubIdentityManagement extends AbstractAmazonIdentityManagement {
+
+    final Map<String, Role> roles = new LinkedHashMap<>();
+    final Map<String, List<String>> attachedPolicyArns = new LinkedHashMap<>();
+    final Map<String, InstanceProfile> instanceProfiles = new LinkedHashMap<>();
+    final List<Policy> policies = new ArrayList<>();
+    final List<ServerCertificateMetadata> serverCertificates = new ArrayList<>();
+    final Queue<Long> requestNanos = new ConcurrentLinkedQueue<>();
+    final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+    private final int pageSize;
+    volatile long latencyMillis;
+    volatile RuntimeException failure;
+    volatile Error error;
+
+    StubIdentityManagement(final int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    StubIdentityManagement addRole(final String name, final String... policyArns) {
+        roles.put(name, new Role().withRoleName(name).withArn("arn:aws:iam::123456789012:role/" + name));
+        final List<String> arns = new ArrayList<>();
+        Collections.addAll(arns, policyArns);
+        attachedPolicyArns.put(name, arns);
+        return this;
+    }
+
+    StubIdentityManagement addInstanceProfile(final String name, final String... roleNames) {
+        final InstanceProfile profile = new InstanceProfile().withInstanceProfileName(name)
+                .withArn("arn:aws:iam::123456789012:instance-profile/" + name);
+        for (String roleName : roleNames) {
+            profile.getRoles().add(roles.get(roleName));
+        }
+        instanceProfiles.put(name, profile);
+        return this;
+    }
+
+    StubIdentityManagement addPolicy(final String name, final boolean awsManaged) {
+        policies.add(new Policy().withPolicyName(name).withArn(awsManaged
+                ? "arn:aws:iam::aws:policy/" + name : "arn:aws:iam::123456789012:policy/" + name));
+        return this;
+    }
+
+    StubIdentityManagement addServerCertificate(final String name) {
+        serverCertificates.add(new ServerCertificateMetadata().withServerCertificateName(name)
+                .withArn("arn:aws:iam::123456789012:server-certificate/" + name));
+        return this;
+    }
+
+    int calls(final String operation) {
+        final AtomicInteger count = calls.get(operation);
+        return count == null ? 0 : count.get();
+    }
+
+    @Override
+    public ListPoliciesResult listPolicies(ListPoliciesRequest request) {
+        call("ListPolicies");
+        final int from = start(request.getMarker());
+        final List<Policy> page = page(policies, from);
+        return new ListPoliciesResult().withPolicies(page)
+                .withIsTruncated(from + page.size() < policies.size()).withMarker(marker(from, policies.size()));
+    }
+
+    @Override
+    public GetRoleResult getRole(GetRoleRequest request) {
+        call("GetRole");
+        final Role role = roles.get(request.getRoleName());
+        if (role == null) {
+            throw noSuchEntity("Role " + request.getRoleName());
+        }
+        return new GetRoleResult().withRole(role);
+    }
+
+    @Override
+    public GetInstanceProfileResult getInstanceProfile(GetInstanceProfileRequest request) {
+        call("GetInstanceProfile");
+        final InstanceProfile profile = instanceProfiles.get(request.getInstanceProfileName());
+        if (profile == null) {
+            throw noSuchEntity("Instance Profile " + request.getInstanceProfileName());
+        }
+        return new GetInstanceProfileResult().withInstanceProfile(profile);
+    }
+
+    @Override
+    public ListInstanceProfilesResult listInstanceProfiles(ListInstanceProfilesRequest request) {
+        call("ListInstanceProfiles");
+        final List<InstanceProfile> all = new ArrayList<>(instanceProfiles.values());
+        final int from = start(request.getMarker());
+        final List<InstanceProfile> page = page(all, from);
+        return new ListInstanceProfilesResult().withInstanceProfiles(page)
+                .withIsTruncated(from + page.size() < all.size()).withMarker(marker(from, all.size()));
+    }
+
+    @Override
+    public ListAttachedRolePoliciesResult listAttachedRolePolicies(ListAttachedRolePoliciesRequest request) {
+        call("ListAttachedRolePolicies");
+        final List<String> arns = attachedPolicyArns.get(request.getRoleName());
+        if (arns == null) {
+            throw noSuchEntity("Role " + request.getRoleName());
+        }
+        final int from = start(request.getMarker());
+        final List<AttachedPolicy> page = new ArrayList<>();
+        for (String arn : page(arns, from)) {
+            page.add(new AttachedPolicy().withPolicyArn(arn).withPolicyName(arn.substring(arn.lastIndexOf('/') + 1)));
+        }
+        return new ListAttachedRolePoliciesResult().withAttachedPolicies(page)
+                .withIsTruncated(from + page.size() < arns.size()).withMarker(marker(from, arns.size()));
+    }
+
+    @Override
+    public ListServerCertificatesResult listServerCertificates(ListServerCertificatesRequest request) {
+        call("ListServerCertificates");
+        final int from = start(request.getMarker());
+        final List<ServerCertificateMetadata> page = page(serverCertificates, from);
+        return new ListServerCertificatesResult().withServerCertificateMetadataList(page)
+                .withIsTruncated(from + page.size() < serverCertificates.size())
+                .withMarker(marker(from, serverCertificates.size()));
+    }
+
+    @Override
+    public GetAccountAuthorizationDetailsResult getAccountAuthorizationDetails(GetAccountAuthorizationDetailsRequest request) {
+        call("GetAccountAuthorizationDetails");
+        final List<RoleDetail> details = new ArrayList<>();
+        for (Role role : roles.values()) {
+            final RoleDetail detail = new RoleDetail().withRoleName(role.getRoleName()).withArn(role.getArn())
+                    .withRolePolicyList(new PolicyDetail().withPolicyName(role.getRoleName() + "-inline"));
+            for (String arn : attachedPolicyArns.get(role.getRoleName())) {
+                detail.getAttachedManagedPolicies().add(new AttachedPolicy().withPolicyArn(arn));
+            }
+            for (InstanceProfile profile : instanceProfiles.values()) {
+                if (profile.getRoles().contains(role)) {
+                    detail.getInstanceProfileList().add(profile);
+                }
+            }
+            details.add(detail);
+        }
+        final int from = start(request.getMarker());
+        final List<RoleDetail> page = page(details, from);
+        return new GetAccountAuthorizationDetailsResult().withRoleDetailList(page)
+                .withIsTruncated(from + page.size() < details.size()).withMarker(marker(from, details.size()));
+    }
+
+    private void call(final String operation) {
+        requestNanos.add(System.nanoTime());
+        calls.computeIfAbsent(operation, k -> new AtomicInteger()).incrementAndGet();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            if (latencyMillis > 0) {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+        if (error != null) {
+            throw error;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private <T> List<T> page(final List<T> all, final int from) {
+        return new ArrayList<>(all.subList(Math.min(from, all.size()), Math.min(from + pageSize, all.size())));
+    }
+
+    private static int start(final String marker) {
+        return marker == null ? 0 : Integer.parseInt(marker);
+    }
+
+    private String marker(final int from, final int size) {
+        return from + pageSize < size ? Integer.toString(from + pageSize) : null;
+    }
+
+    private static NoSuchEntityException noSuchEntity(final String entity) {
+        final NoSuchEntityException e = new NoSuchEntityException("The " + entity + " cannot be found.");
+        e.setErrorCode("NoSuchEntity");
+        e.setStatusCode(404);
+        return e;
+    }
+
+    static AmazonIdentityManagementException serviceError(final String errorCode, final int statusCode) {
+        final AmazonIdentityManagementException e = new AmazonIdentityManagementException(errorCode);
+        e.setErrorCode(errorCode);
+        e.setStatusCode(statusCode);
+        return e;
+    }
+}
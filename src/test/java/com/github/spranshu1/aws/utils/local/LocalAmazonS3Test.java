@@ -0,0 +1,261 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.local;
+
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.BucketVersioningConfiguration;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.ListVersionsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.S3VersionSummary;
+import com.amazonaws.services.s3.model.SetBucketVersioningConfigurationRequest;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.VersionListing;
+import com.amazonaws.util.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LocalAmazonS3Test {
+
+    private static final String BUCKET = "bucket";
+
+    private LocalAmazonS3 s3;
+
+    @Before
+    public void setUp() {
+        s3 = new LocalAmazonS3();
+        s3.createBucket(BUCKET);
+    }
+
+    @Test
+    public void versionsAndDeleteMarkers() throws IOException {
+        assertNull(s3.putObject(BUCKET, "unversioned", "v0").getVersionId());
+        enableVersioning();
+        final PutObjectResult first = s3.putObject(BUCKET, "key", "v1");
+        final PutObjectResult second = s3.putObject(BUCKET, "key", "v2");
+        assertNotNull(first.getVersionId());
+        assertFalse(first.getVersionId().equals(second.getVersionId()));
+
+        assertEquals("v2", s3.getObjectAsString(BUCKET, "key"));
+        assertEquals("v1", read(s3.getObject(new GetObjectRequest(BUCKET, "key", first.getVersionId()))));
+
+        s3.deleteObject(BUCKET, "key");
+        assertFalse(s3.doesObjectExist(BUCKET, "key"));
+        assertStatus(404, () -> s3.getObject(BUCKET, "key"));
+        assertEquals(Collections.singletonList("unversioned"), keys(s3.listObjects(BUCKET).getObjectSummaries()));
+
+        final List<S3VersionSummary> versions = s3.listVersions(BUCKET, "key").getVersionSummaries();
+        assertEquals(3, versions.size());
+        final S3VersionSummary marker = versions.get(0);
+        assertTrue(marker.isDeleteMarker());
+        assertTrue(marker.isLatest());
+        assertEquals(second.getVersionId(), versions.get(1).getVersionId());
+        assertFalse(versions.get(1).isLatest());
+        assertStatus(405, () -> s3.getObject(new GetObjectRequest(BUCKET, "key", marker.getVersionId())));
+
+        // removing the delete marker restores the previous version
+        s3.deleteVersion(BUCKET, "key", marker.getVersionId());
+        assertEquals("v2", s3.getObjectAsString(BUCKET, "key"));
+        s3.deleteVersion(BUCKET, "key", second.getVersionId());
+        assertEquals("v1", s3.getObjectAsString(BUCKET, "key"));
+    }
+
+    @Test
+    public void listObjectsPagesWithDelimiter() {
+        for (String key : Arrays.asList("a/1", "a/2", "b", "c/1", "d", "e")) {
+            s3.putObject(BUCKET, key, key);
+        }
+        ObjectListing listing = s3.listObjects(new ListObjectsRequest().withBucketName(BUCKET)
+                .withDelimiter("/").withMaxKeys(2));
+        assertEquals(Collections.singletonList("a/"), listing.getCommonPrefixes());
+        assertEquals(Collections.singletonList("b"), keys(listing.getObjectSummaries()));
+        assertTrue(listing.isTruncated());
+
+        listing = s3.listNextBatchOfObjects(listing);
+        assertEquals(Collections.singletonList("c/"), listing.getCommonPrefixes());
+        assertEquals(Collections.singletonList("d"), keys(listing.getObjectSummaries()));
+        assertTrue(listing.isTruncated());
+
+        listing = s3.listNextBatchOfObjects(listing);
+        assertEquals(Collections.singletonList("e"), keys(listing.getObjectSummaries()));
+        assertFalse(listing.isTruncated());
+        assertTrue(s3.listNextBatchOfObjects(listing).getObjectSummaries().isEmpty());
+    }
+
+    @Test
+    public void listObjectsV2PagesWithContinuationToken() {
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            expected.add("logs/" + i);
+            s3.putObject(BUCKET, "logs/" + i, "line " + i);
+        }
+        s3.putObject(BUCKET, "other", "x");
+
+        final List<String> listed = new ArrayList<>();
+        final ListObjectsV2Request request = new ListObjectsV2Request().withBucketName(BUCKET)
+                .withPrefix("logs/").withMaxKeys(3);
+        ListObjectsV2Result result;
+        int pages = 0;
+        do {
+            result = s3.listObjectsV2(request);
+            listed.addAll(keys(result.getObjectSummaries()));
+            assertEquals(result.getObjectSummaries().size(), result.getKeyCount());
+            request.setContinuationToken(result.getNextContinuationToken());
+            pages++;
+        } while (result.isTruncated());
+        assertEquals(expected, listed);
+        assertEquals(3, pages);
+
+        final ListObjectsV2Result afterStart = s3.listObjectsV2(new ListObjectsV2Request().withBucketName(BUCKET)
+                .withStartAfter("logs/5"));
+        assertEquals(Arrays.asList("logs/6", "other"), keys(afterStart.getObjectSummaries()));
+    }
+
+    @Test
+    public void listVersionsPagesWithinAKey() {
+        enableVersioning();
+        final Set<String> written = new HashSet<>();
+        for (String key : Arrays.asList("a", "b", "c")) {
+            for (int i = 0; i < 3; i++) {
+                written.add(key + "@" + s3.putObject(BUCKET, key, key + i).getVersionId());
+            }
+        }
+        final Set<String> listed = new HashSet<>();
+        VersionListing listing = s3.listVersions(new ListVersionsRequest().withBucketName(BUCKET).withMaxResults(4));
+        int pages = 1;
+        while (true) {
+            for (S3VersionSummary summary : listing.getVersionSummaries()) {
+                assertTrue(summary.getKey() + " listed twice", listed.add(summary.getKey() + "@" + summary.getVersionId()));
+            }
+            if (!listing.isTruncated()) {
+                break;
+            }
+            listing = s3.listNextBatchOfVersions(listing);
+            pages++;
+        }
+        assertEquals(written, listed);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    public void multipartUploadJoinsPartsInOrder() throws IOException {
+        final byte[] first = new byte[5 * 1024 * 1024];
+        Arrays.fill(first, (byte) 'a');
+        final byte[] second = "tail".getBytes(StandardCharsets.UTF_8);
+
+        final String uploadId = s3.initiateMultipartUpload(new InitiateMultipartUploadRequest(BUCKET, "large"))
+                .getUploadId();
+        final List<PartETag> parts = new ArrayList<>();
+        parts.add(uploadPart(uploadId, 1, first));
+        parts.add(uploadPart(uploadId, 2, second));
+        final CompleteMultipartUploadResult result = s3.completeMultipartUpload(
+                new CompleteMultipartUploadRequest(BUCKET, "large", uploadId, parts));
+        assertTrue(result.getETag(), result.getETag().endsWith("-2"));
+
+        assertEquals(first.length + second.length, s3.getObjectMetadata(BUCKET, "large").getContentLength());
+        assertEquals("tail", read(s3.getObject(new GetObjectRequest(BUCKET, "large").withPartNumber(2))));
+        assertEquals("aaaa", read(s3.getObject(new GetObjectRequest(BUCKET, "large").withRange(0, 3))));
+        assertStatus(404, () -> s3.completeMultipartUpload(
+                new CompleteMultipartUploadRequest(BUCKET, "large", uploadId, parts)));
+    }
+
+    @Test
+    public void multipartUploadRejectsSmallLeadingParts() {
+        final String uploadId = s3.initiateMultipartUpload(new InitiateMultipartUploadRequest(BUCKET, "large"))
+                .getUploadId();
+        final List<PartETag> parts = Arrays.asList(uploadPart(uploadId, 1, new byte[10]),
+                uploadPart(uploadId, 2, new byte[10]));
+        assertStatus(400, () -> s3.completeMultipartUpload(
+                new CompleteMultipartUploadRequest(BUCKET, "large", uploadId, parts)));
+        assertFalse(s3.doesObjectExist(BUCKET, "large"));
+    }
+
+    @Test
+    public void conditionalGetsCompareTheETag() throws IOException {
+        final String eTag = s3.putObject(BUCKET, "key", "content").getETag();
+
+        final S3Object matching = s3.getObject(new GetObjectRequest(BUCKET, "key").withMatchingETagConstraint(eTag));
+        assertEquals("content", read(matching));
+        assertNull(s3.getObject(new GetObjectRequest(BUCKET, "key").withMatchingETagConstraint("other")));
+        assertNull(s3.getObject(new GetObjectRequest(BUCKET, "key").withNonmatchingETagConstraint(eTag)));
+        assertEquals("content", read(s3.getObject(new GetObjectRequest(BUCKET, "key")
+                .withNonmatchingETagConstraint("other"))));
+    }
+
+    private void enableVersioning() {
+        s3.setBucketVersioningConfiguration(new SetBucketVersioningConfigurationRequest(BUCKET,
+                new BucketVersioningConfiguration(BucketVersioningConfiguration.ENABLED)));
+    }
+
+    private PartETag uploadPart(final String uploadId, final int partNumber, final byte[] data) {
+        return s3.uploadPart(new UploadPartRequest().withBucketName(BUCKET).withKey("large").withUploadId(uploadId)
+                .withPartNumber(partNumber).withPartSize(data.length)
+                .withInputStream(new ByteArrayInputStream(data))).getPartETag();
+    }
+
+    private static String read(final S3Object object) throws IOException {
+        try (S3Object closing = object) {
+            return new String(IOUtils.toByteArray(closing.getObjectContent()), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static List<String> keys(final List<S3ObjectSummary> summaries) {
+        final List<String> keys = new ArrayList<>();
+        for (S3ObjectSummary summary : summaries) {
+            keys.add(summary.getKey());
+        }
+        return keys;
+    }
+
+    private static void assertStatus(final int statusCode, final Runnable call) {
+        try {
+            call.run();
+            fail("expected status " + statusCode);
+        } catch (AmazonS3Exception e) {
+            assertEquals(e.getErrorCode(), statusCode, e.getStatusCode());
+        }
+    }
+}
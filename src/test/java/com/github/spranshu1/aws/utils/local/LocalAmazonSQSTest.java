@@ -0,0 +1,168 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.local;
+
+import com.amazonaws.services.sqs.model.AmazonSQSException;
+import com.amazonaws.services.sqs.model.CreateQueueRequest;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LocalAmazonSQSTest {
+
+    private LocalAmazonSQS sqs;
+
+    @Before
+    public void setUp() {
+        sqs = new LocalAmazonSQS();
+    }
+
+    @Test
+    public void receivedMessageIsHiddenUntilVisibilityTimeoutExpires() throws Exception {
+        final String queueUrl = sqs.createQueue("source").getQueueUrl();
+        sqs.sendMessage(queueUrl, "hello");
+
+        final List<Message> first = receive(queueUrl, 1);
+        assertEquals(1, first.size());
+        assertEquals("1", first.get(0).getAttributes().get("ApproximateReceiveCount"));
+        assertTrue(receive(queueUrl, 1).isEmpty());
+
+        TimeUnit.MILLISECONDS.sleep(1100);
+        final List<Message> second = receive(queueUrl, 1);
+        assertEquals(1, second.size());
+        assertEquals("hello", second.get(0).getBody());
+        assertEquals("2", second.get(0).getAttributes().get("ApproximateReceiveCount"));
+    }
+
+    @Test
+    public void changeVisibilityToZeroMakesMessageVisibleAgain() {
+        final String queueUrl = sqs.createQueue("source").getQueueUrl();
+        sqs.sendMessage(queueUrl, "hello");
+
+        final Message message = receive(queueUrl, 30).get(0);
+        sqs.changeMessageVisibility(queueUrl, message.getReceiptHandle(), 0);
+
+        assertEquals(1, receive(queueUrl, 30).size());
+    }
+
+    @Test
+    public void deletedMessageIsNotRedelivered() throws Exception {
+        final String queueUrl = sqs.createQueue("source").getQueueUrl();
+        sqs.sendMessage(queueUrl, "hello");
+
+        sqs.deleteMessage(queueUrl, receive(queueUrl, 1).get(0).getReceiptHandle());
+
+        TimeUnit.MILLISECONDS.sleep(1100);
+        assertTrue(receive(queueUrl, 1).isEmpty());
+    }
+
+    @Test
+    public void messageOverMaxReceiveCountMovesToDeadLetterQueue() {
+        final String dlqUrl = sqs.createQueue("source-dlq").getQueueUrl();
+        final String queueUrl = sqs.createQueue(new CreateQueueRequest("source")
+                .addAttributesEntry("RedrivePolicy", redrivePolicy(queueArn(dlqUrl), 2))).getQueueUrl();
+        sqs.sendMessage(queueUrl, "poison");
+
+        assertEquals(1, receive(queueUrl, 0).size());
+        assertEquals(1, receive(queueUrl, 0).size());
+        assertTrue(receive(queueUrl, 0).isEmpty());
+
+        final List<Message> deadLettered = receive(dlqUrl, 30);
+        assertEquals(1, deadLettered.size());
+        assertEquals("poison", deadLettered.get(0).getBody());
+    }
+
+    @Test
+    public void redrivePolicyToUnknownQueueIsRejected() {
+        final String queueUrl = sqs.createQueue("source").getQueueUrl();
+        final String missingArn = queueArn(queueUrl) + "-missing";
+        try {
+            sqs.createQueue(new CreateQueueRequest("other")
+                    .addAttributesEntry("RedrivePolicy", redrivePolicy(missingArn, 1)));
+            fail("createQueue accepted an unknown dead letter target");
+        } catch (AmazonSQSException e) {
+            assertEquals("InvalidParameterValue", e.getErrorCode());
+        }
+        try {
+            sqs.setQueueAttributes(queueUrl,
+                    Collections.singletonMap("RedrivePolicy", redrivePolicy(missingArn, 1)));
+            fail("setQueueAttributes accepted an unknown dead letter target");
+        } catch (AmazonSQSException e) {
+            assertEquals("InvalidParameterValue", e.getErrorCode());
+        }
+    }
+
+    @Test
+    public void messageStaysInSourceWhenDeadLetterQueueIsDeleted() {
+        final String dlqUrl = sqs.createQueue("source-dlq").getQueueUrl();
+        final String queueUrl = sqs.createQueue(new CreateQueueRequest("source")
+                .addAttributesEntry("RedrivePolicy", redrivePolicy(queueArn(dlqUrl), 1))).getQueueUrl();
+        sqs.sendMessage(queueUrl, "poison");
+        sqs.deleteQueue(dlqUrl);
+
+        assertEquals(1, receive(queueUrl, 0).size());
+        assertEquals(1, receive(queueUrl, 0).size());
+    }
+
+    @Test
+    public void faultsArePerThreadAndReproducible() throws Exception {
+        final FaultProfile profile = FaultProfile.builder().batchEntryFailureRate(0.5).seed(7L).build();
+        final List<Boolean> first = failures(profile, "worker-1");
+        assertEquals(first, failures(FaultProfile.builder().batchEntryFailureRate(0.5).seed(7L).build(), "worker-1"));
+        assertTrue(first.contains(true));
+        assertTrue(first.contains(false));
+    }
+
+    private List<Message> receive(final String queueUrl, final int visibilityTimeout) {
+        return sqs.receiveMessage(new ReceiveMessageRequest(queueUrl)
+                .withMaxNumberOfMessages(10)
+                .withVisibilityTimeout(visibilityTimeout)
+                .withWaitTimeSeconds(0)
+                .withAttributeNames("All")).getMessages();
+    }
+
+    private String queueArn(final String queueUrl) {
+        return sqs.getQueueAttributes(queueUrl, Collections.singletonList("QueueArn")).getAttributes().get("QueueArn");
+    }
+
+    private static String redrivePolicy(final String deadLetterTargetArn, final int maxReceiveCount) {
+        return "{\"deadLetterTargetArn\":\"" + deadLetterTargetArn + "\",\"maxReceiveCount\":\"" + maxReceiveCount + "\"}";
+    }
+
+    private static List<Boolean> failures(final FaultProfile profile, final String threadName) throws Exception {
+        final List<Boolean> failures = new ArrayList<>();
+        final Thread thread = new Thread(() -> {
+            for (int i = 0; i < 32; i++) {
+                failures.add(profile.failBatchEntry());
+            }
+        }, threadName);
+        thread.start();
+        thread.join();
+        return failures;
+    }
+}
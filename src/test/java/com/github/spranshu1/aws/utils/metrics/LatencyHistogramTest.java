@@ -0,0 +1,136 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValuesHaveExactBuckets() {
+        for (int value = 0; value < 8; value++) {
+            assertEquals(value, LatencyHistogram.indexOf(value));
+            assertEquals(value, LatencyHistogram.upperBoundOf(value));
+        }
+        assertEquals(8, LatencyHistogram.indexOf(8));
+        assertEquals(15, LatencyHistogram.indexOf(15));
+        assertEquals(15, LatencyHistogram.upperBoundOf(15));
+        // from 16 on, each bucket spans 1/8 of its power of two
+        assertEquals(16, LatencyHistogram.indexOf(16));
+        assertEquals(16, LatencyHistogram.indexOf(17));
+        assertEquals(17, LatencyHistogram.indexOf(18));
+        assertEquals(17, LatencyHistogram.upperBoundOf(16));
+    }
+
+    @Test
+    public void everyValueFallsInsideItsBucketWithinTheErrorBound() {
+        final SplittableRandom random = new SplittableRandom(42);
+        final List<Long> values = new ArrayList<>();
+        for (int bits = 0; bits < 63; bits++) {
+            values.add(1L << bits);
+            values.add((1L << bits) - 1);
+            values.add((1L << bits) + 1);
+            values.add(random.nextLong(Math.max(1L, 1L << bits)));
+        }
+        values.add(Long.MAX_VALUE);
+        for (long value : values) {
+            final int index = LatencyHistogram.indexOf(value);
+            final long upper = LatencyHistogram.upperBoundOf(index);
+            final long lower = index == 0 ? 0L : LatencyHistogram.upperBoundOf(index - 1) + 1;
+            assertTrue(value + " above bucket " + index, value <= upper);
+            assertTrue(value + " below bucket " + index, value >= lower);
+            assertTrue(value + " bucket too wide", upper - lower <= lower / 8);
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBoundOf(LatencyHistogram.indexOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0L, histogram.getCount());
+        assertEquals(0d, histogram.getMean(TimeUnit.MILLISECONDS), 0d);
+        assertEquals(0L, histogram.getMax(TimeUnit.MILLISECONDS));
+        assertEquals(0L, histogram.getPercentile(99, TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void percentilesReportTheUpperBoundOfTheirBucket() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 100; millis++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+        histogram.record(-5L);
+
+        assertEquals(101L, histogram.getCount());
+        assertEquals(0L, histogram.getPercentile(0, TimeUnit.NANOSECONDS));
+        assertEquals(100L, histogram.getMax(TimeUnit.MILLISECONDS));
+        assertEquals(5050d / 101, histogram.getMean(TimeUnit.MILLISECONDS), 1e-9);
+        assertWithinBucket(50, histogram.getPercentile(50, TimeUnit.NANOSECONDS));
+        assertWithinBucket(99, histogram.getPercentile(99, TimeUnit.NANOSECONDS));
+        // the top bucket is capped at the max
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), histogram.getPercentile(100, TimeUnit.NANOSECONDS));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), histogram.getPercentile(150, TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final int threads = 8;
+        final int perThread = 50_000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final long value = TimeUnit.MICROSECONDS.toNanos(t + 1);
+            final Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    histogram.record(value);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals((long) threads * perThread, histogram.getCount());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(threads), histogram.getMax(TimeUnit.NANOSECONDS));
+        assertEquals(4.5d, histogram.getMean(TimeUnit.MICROSECONDS), 1e-9);
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(threads), histogram.getPercentile(100, TimeUnit.NANOSECONDS));
+    }
+
+    private static void assertWithinBucket(final long expectedMillis, final long actualNanos) {
+        final long expected = TimeUnit.MILLISECONDS.toNanos(expectedMillis);
+        assertTrue(actualNanos + " below " + expected, actualNanos >= expected);
+        assertTrue(actualNanos + " too far above " + expected, actualNanos <= expected + expected / 8);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void operationsAreRecordedSeparately() {
+        final MetricsRegistry registry = new MetricsRegistry();
+        registry.onOperation(Operation.S3_UPLOAD, TimeUnit.MILLISECONDS.toNanos(4), 1024L, true);
+        registry.onOperation(Operation.S3_UPLOAD, TimeUnit.MILLISECONDS.toNanos(8), 0L, false);
+        registry.onOperation(Operation.S3_UPLOAD, TimeUnit.MILLISECONDS.toNanos(2), -1L, true);
+
+        final MetricsRegistry.OperationMetrics put = registry.getOperationMetrics(Operation.S3_UPLOAD);
+        assertEquals(3L, put.getCalls());
+        assertEquals(1L, put.getErrors());
+        assertEquals(1024L, put.getBytes());
+        assertEquals(3L, put.getLatency().getCount());
+        assertEquals(8L, put.getLatency().getMax(TimeUnit.MILLISECONDS));
+
+        for (Operation operation : Operation.values()) {
+            if (operation != Operation.S3_UPLOAD) {
+                assertEquals(operation.name(), 0L, registry.getOperationMetrics(operation).getCalls());
+            }
+        }
+    }
+
+    @Test
+    public void retriesAndThrottlesAreCountedPerService() {
+        final MetricsRegistry registry = new MetricsRegistry();
+        assertTrue(registry.getRetries().isEmpty());
+        registry.onRetry("AmazonS3");
+        registry.onRetry("AmazonS3");
+        registry.onRetry("AmazonSQS");
+        registry.onThrottle("AmazonSQS");
+
+        assertEquals(Long.valueOf(2L), registry.getRetries().get("AmazonS3"));
+        assertEquals(Long.valueOf(1L), registry.getRetries().get("AmazonSQS"));
+        assertEquals(1, registry.getThrottles().size());
+        assertEquals(Long.valueOf(1L), registry.getThrottles().get("AmazonSQS"));
+    }
+
+    @Test
+    public void concurrentListenersAreAllCounted() throws InterruptedException {
+        final MetricsRegistry registry = new MetricsRegistry();
+        final int threads = 8;
+        final int perThread = 10_000;
+        final List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final String service = t % 2 == 0 ? "AmazonS3" : "AmazonSQS";
+            final Thread worker = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    registry.onOperation(Operation.SQS_SEND_BATCH, 1000L, 10L, i % 10 != 0);
+                    registry.onRetry(service);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        final MetricsRegistry.OperationMetrics send = registry.getOperationMetrics(Operation.SQS_SEND_BATCH);
+        assertEquals((long) threads * perThread, send.getCalls());
+        assertEquals((long) threads * perThread / 10, send.getErrors());
+        assertEquals(10L * threads * perThread, send.getBytes());
+        assertEquals((long) threads * perThread / 2, (long) registry.getRetries().get("AmazonS3"));
+        assertEquals((long) threads * perThread / 2, (long) registry.getRetries().get("AmazonSQS"));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.s3;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.github.spranshu1.aws.utils.concurrent.ExecutionMode;
+import com.github.spranshu1.aws.utils.local.FaultProfile;
+import com.github.spranshu1.aws.utils.local.LocalAmazonS3;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class S3BucketHelperTest {
+
+    private static final String BUCKET = "bucket";
+
+    private CountingS3 s3;
+
+    @Before
+    public void setUp() {
+        s3 = new CountingS3();
+        s3.createBucket(BUCKET);
+        for (int i = 0; i < 12; i += 2) {
+            s3.putObject(BUCKET, "key-" + i, "content");
+        }
+    }
+
+    @Test
+    public void checkKeysExistAnswersInInputOrderWithinConcurrency() {
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            s3.maxInFlight.set(0);
+            final S3BucketHelper helper = new S3BucketHelper(BUCKET, s3, 3, mode);
+            final List<String> keys = new ArrayList<>();
+            for (int i = 11; i >= 0; i--) {
+                keys.add("key-" + i);
+            }
+            keys.add("key-11");
+
+            final Map<String, Boolean> exists = helper.checkKeysExist(keys);
+            assertEquals(keys.subList(0, 12), new ArrayList<>(exists.keySet()));
+            for (int i = 0; i < 12; i++) {
+                assertEquals("key-" + i, i % 2 == 0, exists.get("key-" + i));
+            }
+            assertTrue(mode + " sent " + s3.maxInFlight.get(), s3.maxInFlight.get() <= 3);
+            assertTrue(mode + " sent " + s3.maxInFlight.get(), s3.maxInFlight.get() > 1);
+            helper.close(false);
+        }
+        assertTrue(new S3BucketHelper(BUCKET, s3).checkKeysExist(new ArrayList<>()).isEmpty());
+    }
+
+    @Test
+    public void checkKeysExistRethrowsErrorsOtherThanNotFound() {
+        final S3BucketHelper helper = new S3BucketHelper(BUCKET, s3, 2, ExecutionMode.PLATFORM);
+        s3.setFaultProfile(FaultProfile.builder().errorRate(1.0).build());
+        try {
+            helper.checkKeysExist(Arrays.asList("key-0", "key-1"));
+            fail("internal error was reported as a missing key");
+        } catch (AmazonServiceException e) {
+            assertEquals(500, e.getStatusCode());
+        } finally {
+            helper.close(false);
+        }
+    }
+
+    @Test
+    public void closeShutsDownTheClientOnlyWhenAsked() {
+        new S3BucketHelper(BUCKET, s3, 2, ExecutionMode.PLATFORM).close(false);
+        assertFalse(s3.shutDown);
+        assertTrue(new S3BucketHelper(BUCKET, s3, 2, ExecutionMode.PLATFORM).checkKeyExists("key-0"));
+
+        new S3BucketHelper(BUCKET, s3, 2, ExecutionMode.PLATFORM).close(true);
+        assertTrue(s3.shutDown);
+
+        final CountingS3 other = new CountingS3();
+        new S3BucketHelper(BUCKET, other).close();
+        assertTrue(other.shutDown);
+    }
+
+    /**
+     * Local S3 recording the HEAD requests in flight and whether it was shut down.
+     */
+    private static final class CountingS3 extends LocalAmazonS3 {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private volatile boolean shutDown;
+
+        @Override
+        public ObjectMetadata getObjectMetadata(GetObjectMetadataRequest request) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                TimeUnit.MILLISECONDS.sleep(20);
+                return super.getObjectMetadata(request);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            shutDown = true;
+        }
+    }
+}
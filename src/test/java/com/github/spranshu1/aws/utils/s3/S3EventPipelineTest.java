@@ -0,0 +1,196 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.s3;
+
+import com.amazonaws.services.sqs.model.CreateQueueRequest;
+import com.amazonaws.util.IOUtils;
+import com.github.spranshu1.aws.utils.local.LocalAmazonS3;
+import com.github.spranshu1.aws.utils.local.LocalAmazonSQS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class S3EventPipelineTest {
+
+    private LocalAmazonS3 s3;
+    private LocalAmazonSQS sqs;
+    private String queueUrl;
+    private S3EventPipeline pipeline;
+    private final Map<String, Integer> handledKeys = new ConcurrentHashMap<>();
+
+    @Before
+    public void setUp() {
+        s3 = new LocalAmazonS3();
+        s3.createBucket("bucket");
+        sqs = new LocalAmazonSQS();
+        queueUrl = sqs.createQueue(new CreateQueueRequest("events")
+                .addAttributesEntry("VisibilityTimeout", "1")).getQueueUrl();
+    }
+
+    @After
+    public void tearDown() {
+        if (pipeline != null) {
+            pipeline.close();
+        }
+    }
+
+    @Test
+    public void messageIsDeletedOnlyAfterEveryRecordSucceeded() throws Exception {
+        final String first = s3.putObject("bucket", "first", "1").getETag();
+        final String second = s3.putObject("bucket", "second", "2").getETag();
+        sqs.sendMessage(queueUrl, notification(record("first", first), record("second", second)));
+        final AtomicBoolean failSecond = new AtomicBoolean(true);
+
+        pipeline = start((record, object) -> {
+            if (object.getKey().equals("second") && failSecond.getAndSet(false)) {
+                throw new IllegalStateException("handler failed");
+            }
+            count(object.getKey());
+            IOUtils.toByteArray(object.getObjectContent());
+        });
+
+        await(() -> pipeline.getFailedRecords() == 1);
+        assertEquals(0, pipeline.getDeletedMessages());
+        await(() -> pipeline.getDeletedMessages() == 1);
+        // the redelivery only retried the record that failed
+        assertEquals(Integer.valueOf(1), handledKeys.get("first"));
+        assertEquals(Integer.valueOf(1), handledKeys.get("second"));
+        assertEquals(1, pipeline.getDuplicateRecords());
+        assertEquals(0, messagesInQueue());
+    }
+
+    @Test
+    public void failingMessageStaysInQueue() throws Exception {
+        final String eTag = s3.putObject("bucket", "key", "1").getETag();
+        sqs.sendMessage(queueUrl, notification(record("key", eTag)));
+
+        pipeline = start((record, object) -> {
+            throw new IllegalStateException("handler failed");
+        });
+
+        await(() -> pipeline.getFailedRecords() >= 2);
+        assertEquals(0, pipeline.getDeletedMessages());
+        assertEquals(1, messagesInQueue());
+    }
+
+    @Test
+    public void redeliveredRecordsAreDeduplicatedOnETag() throws Exception {
+        final String eTag = s3.putObject("bucket", "key", "1").getETag();
+        final String body = notification(record("key", eTag));
+        sqs.sendMessage(queueUrl, body);
+        sqs.sendMessage(queueUrl, body);
+
+        pipeline = start((record, object) -> count(object.getKey()));
+
+        await(() -> pipeline.getDeletedMessages() == 2);
+        assertEquals(Integer.valueOf(1), handledKeys.get("key"));
+        assertEquals(1, pipeline.getHandledRecords());
+        assertEquals(1, pipeline.getDuplicateRecords());
+    }
+
+    @Test
+    public void objectOverwrittenSinceTheEventIsSkipped() throws Exception {
+        final String eTag = s3.putObject("bucket", "key", "1").getETag();
+        s3.putObject("bucket", "key", "2");
+        sqs.sendMessage(queueUrl, notification(record("key", eTag)));
+
+        pipeline = start((record, object) -> count(object.getKey()));
+
+        await(() -> pipeline.getDeletedMessages() == 1);
+        assertTrue(handledKeys.isEmpty());
+    }
+
+    @Test
+    public void pollersStayWithinInFlightLimit() throws Exception {
+        final String eTag = s3.putObject("bucket", "key", "1").getETag();
+        for (int i = 0; i < 40; i++) {
+            sqs.sendMessage(queueUrl, notification(record("key", eTag)));
+        }
+        sqs.setQueueAttributes(queueUrl, java.util.Collections.singletonMap("VisibilityTimeout", "30"));
+        final CountDownLatch release = new CountDownLatch(1);
+
+        pipeline = S3EventPipeline.builder(sqs, queueUrl, s3, (record, object) -> release.await())
+                .pollers(3)
+                .waitTimeSeconds(0)
+                .maxInFlightMessages(10)
+                .build();
+        pipeline.start();
+
+        await(() -> messagesInFlight() > 0);
+        TimeUnit.MILLISECONDS.sleep(500);
+        assertEquals(10, messagesInFlight());
+        release.countDown();
+        await(() -> pipeline.getDeletedMessages() == 40);
+    }
+
+    private S3EventPipeline start(final S3ObjectHandler handler) {
+        final S3EventPipeline started = S3EventPipeline.builder(sqs, queueUrl, s3, handler)
+                .waitTimeSeconds(1)
+                .build();
+        started.start();
+        return started;
+    }
+
+    private void count(final String key) {
+        handledKeys.merge(key, 1, Integer::sum);
+    }
+
+    private int messagesInQueue() {
+        final Map<String, String> attributes = sqs.getQueueAttributes(queueUrl, Arrays.asList(
+                "ApproximateNumberOfMessages", "ApproximateNumberOfMessagesNotVisible")).getAttributes();
+        return Integer.parseInt(attributes.get("ApproximateNumberOfMessages"))
+                + Integer.parseInt(attributes.get("ApproximateNumberOfMessagesNotVisible"));
+    }
+
+    private int messagesInFlight() {
+        return Integer.parseInt(sqs.getQueueAttributes(queueUrl, Arrays.asList("ApproximateNumberOfMessagesNotVisible"))
+                .getAttributes().get("ApproximateNumberOfMessagesNotVisible"));
+    }
+
+    private static void await(final BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("condition not met within 10 seconds");
+            }
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+    }
+
+    private static String notification(final String... records) {
+        return "{\"Records\":[" + String.join(",", records) + "]}";
+    }
+
+    private static String record(final String key, final String eTag) {
+        return "{\"eventVersion\":\"2.1\",\"eventSource\":\"aws:s3\",\"awsRegion\":\"us-east-1\","
+                + "\"eventTime\":\"2026-01-01T00:00:00.000Z\",\"eventName\":\"ObjectCreated:Put\","
+                + "\"s3\":{\"s3SchemaVersion\":\"1.0\",\"bucket\":{\"name\":\"bucket\",\"arn\":\"arn:aws:s3:::bucket\"},"
+                + "\"object\":{\"key\":\"" + key + "\",\"size\":1,\"eTag\":\"" + eTag + "\",\"sequencer\":\"00\"}}}";
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Created By: Pranshu Shrivastava
+
+ * All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.spranshu1.aws.utils.sqs;
+
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.MessageAttributeValue;
+import com.amazonaws.services.sqs.model.MessageSystemAttributeName;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.github.spranshu1.aws.utils.local.FaultProfile;
+import com.github.spranshu1.aws.utils.local.LocalAmazonSQS;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SqsQueueMoverTest {
+
+    private LocalAmazonSQS sqs;
+    private String sourceUrl;
+    private String targetUrl;
+
+    @Before
+    public void setUp() {
+        sqs = new LocalAmazonSQS();
+        sourceUrl = sqs.createQueue("source").getQueueUrl();
+        targetUrl = sqs.createQueue("target").getQueueUrl();
+    }
+
+    @Test
+    public void movesEveryMessageDespiteBatchEntryFailures() {
+        send(200);
+        sqs.setFaultProfile(FaultProfile.builder().batchEntryFailureRate(0.1).build());
+
+        final SqsQueueMover.Result result = SqsQueueMover.builder(sqs, sourceUrl, targetUrl)
+                .receivers(4)
+                .maxSendAttempts(6)
+                .waitTimeSeconds(1)
+                .visibilityTimeout(1)
+                .build()
+                .move();
+        sqs.setFaultProfile(FaultProfile.none());
+
+        final Map<String, Integer> moved = drain(targetUrl);
+        final Map<String, Integer> left = drain(sourceUrl);
+        assertTrue(result.getSendFailures() > 0);
+        assertTrue(left.isEmpty());
+        assertEquals(200, moved.size());
+        // a message is only duplicated when its delete failed after the send
+        assertEquals(200 + result.getDeleteFailures(), total(moved));
+        assertEquals(result.getMoved() + result.getDeleteFailures(), total(moved));
+    }
+
+    @Test
+    public void lowRateDoesNotLetVisibilityExpire() {
+        send(60);
+
+        final long startedAt = System.currentTimeMillis();
+        final SqsQueueMover.Result result = SqsQueueMover.builder(sqs, sourceUrl, targetUrl)
+                .receivers(4)
+                .waitTimeSeconds(0)
+                .visibilityTimeout(1)
+                .messagesPerSecond(20)
+                .build()
+                .move();
+
+        final Map<String, Integer> moved = drain(targetUrl);
+        assertEquals(60, result.getMoved());
+        assertEquals(60, result.getReceived());
+        assertEquals(60, moved.size());
+        assertEquals(60, total(moved));
+        // a burst of 20, then 40 more at 20 per second
+        assertTrue(System.currentTimeMillis() - startedAt >= 1500);
+    }
+
+    @Test
+    public void skippedMessagesStayInSource() throws Exception {
+        send(20);
+
+        final SqsQueueMover.Result result = SqsQueueMover.builder(sqs, sourceUrl, targetUrl)
+                .waitTimeSeconds(0)
+                .visibilityTimeout(1)
+                .transform(message -> message.getBody().endsWith("0") ? null : message)
+                .build()
+                .move();
+
+        assertEquals(2, result.getSkipped());
+        assertEquals(18, result.getMoved());
+        assertEquals(18, drain(targetUrl).size());
+        TimeUnit.MILLISECONDS.sleep(1100);
+        assertEquals(2, drain(sourceUrl).size());
+    }
+
+    @Test(timeout = 30000)
+    public void messageThatKeepsFailingIsLeftInSource() throws Exception {
+        // the target reports "poison" as a server side failure on every attempt
+        sqs = new LocalAmazonSQS() {
+            @Override
+            public SendMessageBatchResult sendMessageBatch(SendMessageBatchRequest request) {
+                final List<SendMessageBatchRequestEntry> accepted = new ArrayList<>();
+                final List<BatchResultErrorEntry> failed = new ArrayList<>();
+                for (SendMessageBatchRequestEntry entry : request.getEntries()) {
+                    if ("poison".equals(entry.getMessageBody())) {
+                        failed.add(new BatchResultErrorEntry().withId(entry.getId()).withSenderFault(false)
+                                .withCode("InternalError").withMessage("injected"));
+                    } else {
+                        accepted.add(entry);
+                    }
+                }
+                final SendMessageBatchResult result = accepted.isEmpty() ? new SendMessageBatchResult()
+                        : super.sendMessageBatch(request.clone().withEntries(accepted));
+                return result.withFailed(failed);
+            }
+        };
+        sourceUrl = sqs.createQueue("source").getQueueUrl();
+        targetUrl = sqs.createQueue("target").getQueueUrl();
+        send(4);
+        sqs.sendMessage(sourceUrl, "poison");
+
+        final long startedAt = System.currentTimeMillis();
+        final SqsQueueMover.Result result = SqsQueueMover.builder(sqs, sourceUrl, targetUrl)
+                .receivers(2)
+                .waitTimeSeconds(1)
+                .visibilityTimeout(2)
+                .maxSendAttempts(3)
+                .build()
+                .move();
+
+        assertEquals(4, result.getMoved());
+        assertEquals(3, result.getSendFailures());
+        assertEquals(4, drain(targetUrl).size());
+        // hidden for 1 then 2 seconds between the attempts
+        assertTrue(System.currentTimeMillis() - startedAt >= 3000);
+        TimeUnit.MILLISECONDS.sleep(2100);
+        assertEquals(1, (int) drain(sourceUrl).get("poison"));
+    }
+
+    @Test
+    public void fifoIdsAreCopiedWithoutOtherAttributes() {
+        // models a FIFO source and records what is sent to the FIFO target
+        final Queue<SendMessageBatchRequestEntry> sent = new ConcurrentLinkedQueue<>();
+        final Queue<ReceiveMessageRequest> receives = new ConcurrentLinkedQueue<>();
+        sqs = new LocalAmazonSQS() {
+            @Override
+            public ReceiveMessageResult receiveMessage(ReceiveMessageRequest request) {
+                receives.add(request);
+                final ReceiveMessageResult result = super.receiveMessage(request);
+                for (Message message : result.getMessages()) {
+                    message.addAttributesEntry(MessageSystemAttributeName.MessageGroupId.toString(), "group");
+                    message.addAttributesEntry(MessageSystemAttributeName.MessageDeduplicationId.toString(),
+                            "dedup-" + message.getBody());
+                }
+                return result;
+            }
+
+            @Override
+            public SendMessageBatchResult sendMessageBatch(SendMessageBatchRequest request) {
+                sent.addAll(request.getEntries());
+                return super.sendMessageBatch(request);
+            }
+        };
+        sourceUrl = sqs.createQueue("source").getQueueUrl();
+        targetUrl = sqs.createQueue("target.fifo").getQueueUrl();
+        sqs.sendMessage(new SendMessageRequest(sourceUrl, "message-0").addMessageAttributesEntry("tenant",
+                new MessageAttributeValue().withDataType("String").withStringValue("a")));
+
+        final SqsQueueMover.Result result = SqsQueueMover.builder(sqs, sourceUrl, targetUrl)
+                .waitTimeSeconds(0)
+                .preserveAttributes(false)
+                .build()
+                .move();
+
+        assertEquals(1, result.getMoved());
+        assertTrue(receives.peek().getAttributeNames().contains(MessageSystemAttributeName.MessageGroupId.toString()));
+        final SendMessageBatchRequestEntry entry = sent.peek();
+        assertEquals("group", entry.getMessageGroupId());
+        assertEquals("dedup-message-0", entry.getMessageDeduplicationId());
+        assertTrue(entry.getMessageAttributes() == null || entry.getMessageAttributes().isEmpty());
+        assertTrue(entry.getMessageSystemAttributes() == null || entry.getMessageSystemAttributes().isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void moverMovesOnlyOnce() {
+        final SqsQueueMover mover = SqsQueueMover.builder(sqs, sourceUrl, targetUrl).waitTimeSeconds(0).build();
+        mover.move();
+        mover.move();
+    }
+
+    private void send(final int count) {
+        for (int i = 0; i < count; i++) {
+            sqs.sendMessage(sourceUrl, "message-" + i);
+        }
+    }
+
+    private Map<String, Integer> drain(final String queueUrl) {
+        final Map<String, Integer> counts = new HashMap<>();
+        List<Message> messages;
+        do {
+            messages = new ArrayList<>(sqs.receiveMessage(new ReceiveMessageRequest(queueUrl)
+                    .withMaxNumberOfMessages(10)
+                    .withVisibilityTimeout(60)
+                    .withWaitTimeSeconds(0)).getMessages());
+            for (Message message : messages) {
+                counts.merge(message.getBody(), 1, Integer::sum);
+            }
+        } while (!messages.isEmpty());
+        return counts;
+    }
+
+    private static long total(final Map<String, Integer> counts) {
+        long total = 0;
+        for (int count : counts.values()) {
+            total += count;
+        }
+        return total;
+    }
+}